@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics;
+
+import java.lang.reflect.Member;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricType;
+
+/**
+ * Metric instances that the interceptors have already resolved for an intercepted member, grouped by
+ * metric type and bean class. This lets an interceptor skip the annotation resolution and the registry
+ * lookup on every invocation except the first one.
+ */
+class MemberBindings {
+
+    private final Map<MetricType, Map<Class<?>, Map<Member, Metric>>> bindings = new EnumMap<>(MetricType.class);
+
+    /*
+     * Reverse index, so that unbinding a metric does not have to go through the bindings of all other metrics. Keyed by
+     * identity, because metric implementations may define equality, and two equal metrics must not unbind each other.
+     * Changes of the bindings are made while holding the lock on this map, lookups don't lock.
+     */
+    private final Map<Metric, Set<Binding>> bindingsByMetric = new IdentityHashMap<>();
+
+    MemberBindings() {
+        for (MetricType type : MetricType.values()) {
+            bindings.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    Metric get(MetricType type, Class<?> beanClass, Member member) {
+        Map<Member, Metric> members = bindings.get(type).get(beanClass);
+        return members != null ? members.get(member) : null;
+    }
+
+    void bind(MetricType type, Class<?> beanClass, Member member, Metric metric) {
+        synchronized (bindingsByMetric) {
+            bindings.get(type).computeIfAbsent(beanClass, c -> new ConcurrentHashMap<>()).put(member, metric);
+            bindingsByMetric.computeIfAbsent(metric, m -> new HashSet<>()).add(new Binding(type, beanClass, member));
+        }
+    }
+
+    /**
+     * Drops all bindings pointing to the given metric instance. Called when the metric is removed from the registry
+     * (or replaced by another instance) so that no interceptor keeps using it.
+     */
+    void unbind(Metric metric) {
+        synchronized (bindingsByMetric) {
+            Set<Binding> bound = bindingsByMetric.remove(metric);
+            if (bound == null) {
+                return;
+            }
+            for (Binding binding : bound) {
+                Map<Member, Metric> members = bindings.get(binding.type).get(binding.beanClass);
+                // the member may have been bound to another metric since
+                if (members != null && members.get(binding.member) == metric) {
+                    members.remove(binding.member);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all bindings, so that the registry no longer references the bean classes of an application that is
+     * undeployed.
+     */
+    void clear() {
+        synchronized (bindingsByMetric) {
+            for (Map<Class<?>, Map<Member, Metric>> byBeanClass : bindings.values()) {
+                byBeanClass.clear();
+            }
+            bindingsByMetric.clear();
+        }
+    }
+
+    private static final class Binding {
+        private final MetricType type;
+        private final Class<?> beanClass;
+        private final Member member;
+
+        Binding(MetricType type, Class<?> beanClass, Member member) {
+            this.type = type;
+            this.beanClass = beanClass;
+            this.member = member;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Binding)) {
+                return false;
+            }
+            Binding other = (Binding) o;
+            return type == other.type && beanClass.equals(other.beanClass) && member.equals(other.member);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, beanClass, member);
+        }
+    }
+}
@@ -17,8 +17,6 @@
  */
 package io.smallrye.metrics;
 
-import java.util.SortedMap;
-
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
 import javax.enterprise.inject.spi.InjectionPoint;
@@ -57,12 +55,11 @@ public class MetricProducer {
     @Produces
     <T extends Number> Gauge<T> getGauge(InjectionPoint ip) {
         // A forwarding Gauge must be returned as the Gauge creation happens when the declaring bean gets instantiated and the corresponding Gauge can be injected before which leads to producing a null value
+        MetricID gaugeId = new MetricID(metricName.of(ip));
         return () -> {
             // TODO: better error report when the gauge doesn't exist
-            SortedMap<MetricID, Gauge> gauges = applicationRegistry.getGauges();
-            String name = metricName.of(ip);
-            MetricID gaugeId = new MetricID(name);
-            return ((Gauge<T>) gauges.get(gaugeId)).getValue();
+            // the snapshot of all metrics is only copied when the registry changes, unlike getGauges()
+            return ((Gauge<T>) applicationRegistry.getMetrics().get(gaugeId)).getValue();
         };
     }
 
@@ -56,12 +56,17 @@ public class MetricRegistries {
     }
 
     public static MetricRegistry get(MetricRegistry.Type type) {
-        return registries.computeIfAbsent(type, t -> new MetricsRegistryImpl());
+        return registries.computeIfAbsent(type, MetricsRegistryImpl::new);
     }
 
     @PreDestroy
     public void cleanUp() {
-        registries.remove(MetricRegistry.Type.APPLICATION);
+        MetricRegistry removed = registries.remove(MetricRegistry.Type.APPLICATION);
+        if (removed instanceof MetricsRegistryImpl) {
+            MetricsRegistryImpl registry = (MetricsRegistryImpl) removed;
+            registry.clearMemberBindings();
+            registry.stopTickingMeters();
+        }
     }
 
     private static final Map<MetricRegistry.Type, MetricRegistry> registries = new ConcurrentHashMap<>();
@@ -16,18 +16,33 @@
  */
 package io.smallrye.metrics;
 
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import javax.enterprise.inject.Vetoed;
 import javax.enterprise.inject.spi.InjectionPoint;
 
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.metrics.ConcurrentGauge;
 import org.eclipse.microprofile.metrics.Counter;
 import org.eclipse.microprofile.metrics.Gauge;
@@ -43,11 +58,13 @@ import org.eclipse.microprofile.metrics.Tag;
 import org.eclipse.microprofile.metrics.Timer;
 import org.jboss.logging.Logger;
 
+import io.smallrye.metrics.app.Clock;
 import io.smallrye.metrics.app.ConcurrentGaugeImpl;
 import io.smallrye.metrics.app.CounterImpl;
-import io.smallrye.metrics.app.ExponentiallyDecayingReservoir;
 import io.smallrye.metrics.app.HistogramImpl;
+import io.smallrye.metrics.app.LazyReservoir;
 import io.smallrye.metrics.app.MeterImpl;
+import io.smallrye.metrics.app.MeterTicker;
 import io.smallrye.metrics.app.TimerImpl;
 
 /**
@@ -58,10 +75,21 @@ public class MetricsRegistryImpl extends MetricRegistry {
 
     private static Logger log = Logger.getLogger(MetricsRegistryImpl.class);
 
-    private Map<String, Metadata> metadataMap = new HashMap<>();
+    // if true, the moving averages of meters and timers are ticked by MeterTicker.sharedTicker()
+    public static final String SMALLRYE_METRICS_TICK_METERS_IN_BACKGROUND = "smallrye.metrics.tickMetersInBackground";
+
+    // number of locks used to serialize registrations and removals, must be a power of two
+    private static final int LOCK_STRIPES = 64;
+
+    // copies that getSnapshot() attempts without locking before it takes all locks
+    private static final int OPTIMISTIC_SNAPSHOT_ATTEMPTS = 8;
+
+    /*
+     * All maps are concurrent so that they can be read without locking. Modifications of metrics and metadata
+     * are serialized per metric name, see lockFor(String).
+     */
+    private Map<String, Metadata> metadataMap = new ConcurrentHashMap<>();
 
-    // Only this map needs to be concurrent because it is being iterated in getMetrics which is not synchronized.
-    // Other maps are accessed only in synchronized methods.
     private Map<MetricID, Metric> metricMap = new ConcurrentHashMap<>();
 
     /*
@@ -69,15 +97,81 @@ public class MetricsRegistryImpl extends MetricRegistry {
      * since 2.0 we have to keep track of the origin per each MetricID separately, while Metadata itself
      * is only tracked per Metric Name, that's why we need two maps for that now.
      */
-    private Map<MetricID, Object> originMap = new HashMap<>();
+    private Map<MetricID, Object> originMap = new ConcurrentHashMap<>();
+
+    /*
+     * Index of all MetricIDs grouped by metric name, so that per-name operations don't have to scan the whole metricMap.
+     * Sorted by name, so that getNames() can return a view of its key set.
+     * Kept in sync with metricMap by putMetric and removeMetric.
+     */
+    private final ConcurrentNavigableMap<String, Set<MetricID>> metricIdsByName = new ConcurrentSkipListMap<>();
+
+    /*
+     * metricMap partitioned by metric type, so that the typed getters only look at metrics of the requested type.
+     * A metric is put in every partition it passes isSameType for. The partitions are sorted, so that the typed getters
+     * can return views of them instead of building a new sorted map on every call.
+     * Kept in sync with metricMap by putMetric and removeMetric.
+     */
+    private final Map<MetricType, ConcurrentNavigableMap<MetricID, Metric>> metricsByType = new EnumMap<>(MetricType.class);
+
+    // sorted keys of metricMap, for getMetricIDs()
+    private final ConcurrentSkipListSet<MetricID> sortedMetricIds = new ConcurrentSkipListSet<>();
+
+    // incremented before every change of the maps above, see getSnapshot()
+    private final AtomicLong startedChanges = new AtomicLong();
+
+    // incremented after every change of the maps above, see getSnapshot()
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile RegistrySnapshot snapshot;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    // metric instances already resolved by the interceptors for intercepted members
+    private final MemberBindings memberBindings = new MemberBindings();
+
+    // called with the MetricID of every removed metric, see addRemovalListener(Consumer)
+    private final List<Consumer<MetricID>> removalListeners = new CopyOnWriteArrayList<>();
+
+    // scope of this registry, null if not known
+    private final MetricRegistry.Type scope;
+
+    // created when the first histogram or timer is created, see reservoirFactory()
+    private volatile ReservoirFactory reservoirFactory;
+
+    // resolved when the first meter or timer is created, see meterTicker()
+    private volatile Optional<MeterTicker> meterTicker;
+
+    public MetricsRegistryImpl() {
+        this(null);
+    }
+
+    public MetricsRegistryImpl(MetricRegistry.Type scope) {
+        this.scope = scope;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        for (MetricType type : MetricType.values()) {
+            if (type != MetricType.INVALID) {
+                metricsByType.put(type, new ConcurrentSkipListMap<>());
+            }
+        }
+    }
+
+    /*
+     * Returns the lock guarding registrations and removals of metrics with the given name. Everything that is tracked
+     * per name (metadata) or per MetricID (metrics, origins) only changes while holding this lock, so different names
+     * can be registered in parallel.
+     */
+    private Object lockFor(String name) {
+        int h = name.hashCode();
+        return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
 
     @Override
-    public synchronized <T extends Metric> T register(String name, T metric) {
+    public <T extends Metric> T register(String name, T metric) {
 
         final MetricID metricID = new MetricID(name);
-        if (metricMap.keySet().contains(metricID)) {
-            throw new IllegalArgumentException("A metric with name " + name + " already exists");
-        }
 
         MetricType type;
         Class<?> metricCls = metric.getClass();
@@ -99,8 +193,18 @@ public class MetricsRegistryImpl extends MetricRegistry {
         }
 
         Metadata m = Metadata.builder().withName(name).withType(type).build();
-        metricMap.put(metricID, metric);
-        metadataMap.put(name, m);
+        synchronized (lockFor(name)) {
+            if (metricMap.containsKey(metricID)) {
+                throw new IllegalArgumentException("A metric with name " + name + " already exists");
+            }
+            changing();
+            try {
+                putMetric(metricID, metric);
+                metadataMap.put(name, m);
+            } finally {
+                changed();
+            }
+        }
         return metric;
     }
 
@@ -110,12 +214,19 @@ public class MetricsRegistryImpl extends MetricRegistry {
     }
 
     @Override
-    public synchronized <T extends Metric> T register(Metadata metadata, T metric, Tag... tags) {
+    public <T extends Metric> T register(Metadata metadata, T metric, Tag... tags) {
         String name = metadata.getName();
         if (name == null) {
             throw new IllegalArgumentException("Metric name must not be null");
         }
-        MetricID metricID = new MetricID(name, tags);
+        synchronized (lockFor(name)) {
+            return register(metadata, metric, new MetricID(name, tags));
+        }
+    }
+
+    // must be called while holding the lock for the metric name
+    private <T extends Metric> T register(Metadata metadata, T metric, MetricID metricID) {
+        String name = metricID.getName();
         Metadata existingMetadata = metadataMap.get(name);
 
         boolean reusableFlag = (existingMetadata == null || existingMetadata.isReusable());
@@ -138,38 +249,72 @@ public class MetricsRegistryImpl extends MetricRegistry {
          * - if no metadata was specified for this registration, create a reasonable default
          * - if metadata was specified for this registration, use it
          */
-        if (existingMetadata != null) {
-            if (metadata instanceof UnspecifiedMetadata) {
-                if (!metadata.getType().equals(existingMetadata.getType())) {
-                    throw new IllegalArgumentException("There is an existing metric with name " + name
-                            + " but of different type (" + existingMetadata.getType() + ")");
-                }
-                metricMap.put(metricID, metric);
-            } else {
-                verifyMetadataEquality(metadata, existingMetadata);
-                metricMap.put(metricID, metric);
-                if (metadata instanceof OriginAndMetadata) {
-                    originMap.put(metricID, ((OriginAndMetadata) metadata).getOrigin());
+        changing();
+        try {
+            if (existingMetadata != null) {
+                if (metadata instanceof UnspecifiedMetadata) {
+                    if (!metadata.getType().equals(existingMetadata.getType())) {
+                        throw new IllegalArgumentException("There is an existing metric with name " + name
+                                + " but of different type (" + existingMetadata.getType() + ")");
+                    }
+                    putMetric(metricID, metric);
+                } else {
+                    verifyMetadataEquality(metadata, existingMetadata);
+                    // the origin must be in place before the metric becomes visible to the lock-free get()
+                    if (metadata instanceof OriginAndMetadata) {
+                        originMap.put(metricID, ((OriginAndMetadata) metadata).getOrigin());
+                    }
+                    putMetric(metricID, metric);
                 }
-            }
-        } else {
-            if (metadata instanceof UnspecifiedMetadata) {
-                Metadata realMetadata = ((UnspecifiedMetadata) metadata).convertToRealMetadata();
-                metadataMap.put(name, realMetadata);
-                metricMap.put(metricID, metric);
             } else {
-                if (metadata instanceof OriginAndMetadata) {
-                    originMap.put(metricID, ((OriginAndMetadata) metadata).getOrigin());
-                    metadataMap.put(name, ((OriginAndMetadata) metadata).getMetadata());
+                if (metadata instanceof UnspecifiedMetadata) {
+                    Metadata realMetadata = ((UnspecifiedMetadata) metadata).convertToRealMetadata();
+                    metadataMap.put(name, realMetadata);
+                    putMetric(metricID, metric);
                 } else {
-                    metadataMap.put(name, metadata);
+                    if (metadata instanceof OriginAndMetadata) {
+                        originMap.put(metricID, ((OriginAndMetadata) metadata).getOrigin());
+                        metadataMap.put(name, ((OriginAndMetadata) metadata).getMetadata());
+                    } else {
+                        metadataMap.put(name, metadata);
+                    }
+                    putMetric(metricID, metric);
                 }
-                metricMap.put(metricID, metric);
             }
+        } finally {
+            changed();
         }
         return metric;
     }
 
+    // must be called before every modification of the registry contents, while holding the lock
+    private void changing() {
+        startedChanges.incrementAndGet();
+    }
+
+    // must be called after every modification of the registry contents, while still holding the lock
+    private void changed() {
+        version.incrementAndGet();
+    }
+
+    private void putMetric(MetricID metricID, Metric metric) {
+        Metric previous = metricMap.put(metricID, metric);
+        if (previous == null) {
+            metricIdsByName.computeIfAbsent(metricID.getName(), n -> ConcurrentHashMap.newKeySet()).add(metricID);
+            sortedMetricIds.add(metricID);
+        } else {
+            metricsByType.values().forEach(partition -> partition.remove(metricID));
+        }
+        metricsByType.forEach((type, partition) -> {
+            if (isSameType(metric, type)) {
+                partition.put(metricID, metric);
+            }
+        });
+        if (previous != null && previous != metric) {
+            memberBindings.unbind(previous);
+        }
+    }
+
     private void verifyMetadataEquality(Metadata newMetadata, Metadata existingMetadata) {
         /*
          * we could use simply an equals() call but inspecting the objects in detail allows us to
@@ -313,17 +458,29 @@ public class MetricsRegistryImpl extends MetricRegistry {
         return get(new MetricID(metadata.getName(), tags), sanitizeMetadata(metadata, MetricType.TIMER));
     }
 
-    private synchronized <T extends Metric> T get(MetricID metricID, Metadata metadata) {
+    @SuppressWarnings("unchecked")
+    private <T extends Metric> T get(MetricID metricID, Metadata metadata) {
         String name = metadata.getName();
         MetricType type = metadata.getTypeRaw();
         if (name == null || name.isEmpty()) {
             throw new IllegalArgumentException("Name must not be null or empty");
         }
 
-        Metadata previousMetadata = metadataMap.get(name);
+        // fast path without locking, for metrics that already exist
         Metric previousMetric = metricMap.get(metricID);
+        Metadata previousMetadata = metadataMap.get(name);
+        if (previousMetric != null && previousMetadata != null) {
+            verifyCompatibility(metricID, metadata, previousMetadata);
+            return (T) previousMetric;
+        }
+
+        synchronized (lockFor(name)) {
+            previousMetric = metricMap.get(metricID);
+            if (previousMetric != null) {
+                verifyCompatibility(metricID, metadata, metadataMap.get(name));
+                return (T) previousMetric;
+            }
 
-        if (previousMetric == null) {
             Metric m;
             switch (type) {
 
@@ -333,16 +490,17 @@ public class MetricsRegistryImpl extends MetricRegistry {
                 case GAUGE:
                     throw new IllegalArgumentException("Gauge " + name + " was not registered, this should not happen");
                 case METERED:
-                    m = new MeterImpl();
+                    m = new MeterImpl(Clock.coarseClock(), meterTicker());
                     break;
                 case HISTOGRAM:
-                    m = new HistogramImpl(new ExponentiallyDecayingReservoir());
+                    m = new HistogramImpl(lazyReservoir(name));
                     break;
                 case TIMER:
-                    m = new TimerImpl(new ExponentiallyDecayingReservoir());
+                    // durations are measured precisely, only the rates of the timer use the coarse clock
+                    m = new TimerImpl(lazyReservoir(name), Clock.defaultClock(), Clock.coarseClock(), meterTicker());
                     break;
                 case CONCURRENT_GAUGE:
-                    m = new ConcurrentGaugeImpl();
+                    m = new ConcurrentGaugeImpl(Clock.coarseClock());
                     break;
                 case INVALID:
                 default:
@@ -355,13 +513,59 @@ public class MetricsRegistryImpl extends MetricRegistry {
                 log.debugf("Register metric [metricId: %s, type: %s]", metricID, type);
             }
 
-            register(metadata, m, metricID.getTagsAsList().toArray(new Tag[] {}));
-        } else if (!previousMetadata.getTypeRaw().equals(metadata.getTypeRaw())) {
+            return (T) register(metadata, m, metricID);
+        }
+    }
+
+    private ReservoirFactory reservoirFactory() {
+        ReservoirFactory factory = reservoirFactory;
+        if (factory == null) {
+            // creating more than one factory in a race is harmless
+            factory = ReservoirFactory.fromConfig();
+            reservoirFactory = factory;
+        }
+        return factory;
+    }
+
+    /*
+     * Reservoirs are only allocated when a histogram or timer is first updated, so that registering many of them
+     * is cheap. The factory is resolved right away, so that an invalid configuration fails the registration.
+     */
+    private LazyReservoir lazyReservoir(String name) {
+        ReservoirFactory factory = reservoirFactory();
+        return new LazyReservoir(() -> factory.create(scope, name));
+    }
+
+    private MeterTicker meterTicker() {
+        Optional<MeterTicker> ticker = meterTicker;
+        if (ticker == null) {
+            boolean enabled;
+            try {
+                enabled = ConfigProvider.getConfig()
+                        .getOptionalValue(SMALLRYE_METRICS_TICK_METERS_IN_BACKGROUND, Boolean.class)
+                        .orElse(false);
+            } catch (IllegalStateException e) {
+                log.debug("No MicroProfile Config available, meters will be ticked when they are marked", e);
+                enabled = false;
+            }
+            ticker = enabled ? Optional.of(MeterTicker.sharedTicker()) : Optional.empty();
+            meterTicker = ticker;
+        }
+        return ticker.orElse(null);
+    }
+
+    /*
+     * Checks that a metric which already exists under the given MetricID may be handed out for the given metadata.
+     */
+    private void verifyCompatibility(MetricID metricID, Metadata metadata, Metadata previousMetadata) {
+        String name = metadata.getName();
+        Object previousOrigin = originMap.get(metricID);
+        if (!previousMetadata.getTypeRaw().equals(metadata.getTypeRaw())) {
             throw new IllegalArgumentException("Previously registered metric " + name + " is of type "
                     + previousMetadata.getType() + ", expected " + metadata.getType());
         } else if (metadata instanceof OriginAndMetadata &&
-                originMap.get(metricID) != null &&
-                areCompatibleOrigins(originMap.get(metricID), ((OriginAndMetadata) metadata).getOrigin())) {
+                previousOrigin != null &&
+                areCompatibleOrigins(previousOrigin, ((OriginAndMetadata) metadata).getOrigin())) {
             // stop caring, same thing.
         } else if (previousMetadata.isReusable() && (!(metadata instanceof UnspecifiedMetadata) && !metadata.isReusable())) {
             throw new IllegalArgumentException(
@@ -371,8 +575,6 @@ public class MetricsRegistryImpl extends MetricRegistry {
         } else {
             verifyMetadataEquality(metadata, previousMetadata);
         }
-
-        return (T) metricMap.get(metricID);
     }
 
     private boolean areCompatibleOrigins(Object left, Object right) {
@@ -390,29 +592,73 @@ public class MetricsRegistryImpl extends MetricRegistry {
     @Override
     public boolean remove(String metricName) {
         log.debugf("Removing metrics with [name: %s]", metricName);
-        // iterate over all metricID's in the map and remove the ones with this name
-        for (MetricID metricID : metricMap.keySet()) {
-            if (metricID.getName().equals(metricName)) {
-                metricMap.remove(metricID);
+        synchronized (lockFor(metricName)) {
+            changing();
+            try {
+                Set<MetricID> metricIDs = metricIdsByName.get(metricName);
+                if (metricIDs != null) {
+                    for (MetricID metricID : new ArrayList<>(metricIDs)) {
+                        removeMetric(metricID);
+                    }
+                }
+                // dispose of the metadata as well
+                return metadataMap.remove(metricName) != null;
+            } finally {
+                changed();
             }
         }
-        // dispose of the metadata as well
-        return metadataMap.remove(metricName) != null;
     }
 
     @Override
-    public synchronized boolean remove(MetricID metricID) {
-        if (metricMap.containsKey(metricID)) {
-            log.debugf("Remove metric with [id: %s]", metricID);
-            metricMap.remove(metricID);
-            // remove the metadata as well if this is the last metric of this name to be removed
-            if (metricMap.keySet().stream().noneMatch(id -> id.getName().equals(metricID.getName()))) {
-                log.debugf("Remove metadata for [name: %s]", metricID.getName());
-                metadataMap.remove(metricID.getName());
+    public boolean remove(MetricID metricID) {
+        synchronized (lockFor(metricID.getName())) {
+            if (metricMap.containsKey(metricID)) {
+                log.debugf("Remove metric with [id: %s]", metricID);
+                changing();
+                try {
+                    removeMetric(metricID);
+                    // remove the metadata as well if this is the last metric of this name to be removed
+                    if (!metricIdsByName.containsKey(metricID.getName())) {
+                        log.debugf("Remove metadata for [name: %s]", metricID.getName());
+                        metadataMap.remove(metricID.getName());
+                    }
+                } finally {
+                    changed();
+                }
+                return true;
             }
-            return true;
+            return false;
         }
-        return false;
+    }
+
+    // must be called while holding the lock for the metric name
+    private void removeMetric(MetricID metricID) {
+        Metric removed = metricMap.remove(metricID);
+        originMap.remove(metricID);
+        if (removed != null) {
+            metricsByType.values().forEach(partition -> partition.remove(metricID));
+            sortedMetricIds.remove(metricID);
+            Set<MetricID> metricIDs = metricIdsByName.get(metricID.getName());
+            metricIDs.remove(metricID);
+            if (metricIDs.isEmpty()) {
+                metricIdsByName.remove(metricID.getName());
+            }
+            memberBindings.unbind(removed);
+            for (Consumer<MetricID> listener : removalListeners) {
+                listener.accept(metricID);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that is called with the {@link MetricID} of every metric removed from this registry, after it
+     * has been removed. Exporters use it to forget what they have cached about a metric. The listener is called while
+     * the metric name is locked, so it must not access the registry.
+     *
+     * @param listener the listener to add
+     */
+    public void addRemovalListener(Consumer<MetricID> listener) {
+        removalListeners.add(listener);
     }
 
     @Override
@@ -426,84 +672,249 @@ public class MetricsRegistryImpl extends MetricRegistry {
         }
     }
 
+    /*
+     * getNames(), getMetricIDs() and the typed getters all return immutable snapshots, with or without a filter.
+     * They are copied from sorted collections maintained on registration and removal, which takes linear time
+     * because nothing has to be sorted again.
+     */
+
+    /**
+     * Returns an immutable snapshot of the names of all metrics, sorted. It does not change when metrics are
+     * registered or removed later.
+     */
     @Override
     public java.util.SortedSet<String> getNames() {
-        SortedSet<String> out = new TreeSet<>();
-        for (MetricID id : metricMap.keySet()) {
-            out.add(id.getName());
-        }
-        return out;
+        return Collections.unmodifiableSortedSet(new TreeSet<>(metricIdsByName.keySet()));
     }
 
+    /**
+     * Returns an immutable snapshot of the IDs of all metrics, sorted. It does not change when metrics are
+     * registered or removed later.
+     */
     @Override
     public SortedSet<MetricID> getMetricIDs() {
-        return new TreeSet<>(metricMap.keySet());
+        return Collections.unmodifiableSortedSet(new TreeSet<>(sortedMetricIds));
     }
 
+    /**
+     * Returns an immutable snapshot of all gauges, sorted by ID.
+     */
     @Override
     public SortedMap<MetricID, Gauge> getGauges() {
         return getGauges(MetricFilter.ALL);
     }
 
+    /**
+     * Returns an immutable snapshot of the gauges that match the filter, sorted by ID.
+     */
     @Override
     public SortedMap<MetricID, Gauge> getGauges(MetricFilter metricFilter) {
         return getMetrics(MetricType.GAUGE, metricFilter);
     }
 
+    /**
+     * Returns an immutable snapshot of all counters, sorted by ID.
+     */
     @Override
     public SortedMap<MetricID, Counter> getCounters() {
         return getCounters(MetricFilter.ALL);
     }
 
+    /**
+     * Returns an immutable snapshot of the counters that match the filter, sorted by ID.
+     */
     @Override
     public SortedMap<MetricID, Counter> getCounters(MetricFilter metricFilter) {
         return getMetrics(MetricType.COUNTER, metricFilter);
     }
 
+    /**
+     * Returns an immutable snapshot of all concurrent gauges, sorted by ID.
+     */
     @Override
     public SortedMap<MetricID, ConcurrentGauge> getConcurrentGauges() {
         return getConcurrentGauges(MetricFilter.ALL);
     }
 
+    /**
+     * Returns an immutable snapshot of the concurrent gauges that match the filter, sorted by ID.
+     */
     @Override
     public SortedMap<MetricID, ConcurrentGauge> getConcurrentGauges(MetricFilter metricFilter) {
         return getMetrics(MetricType.CONCURRENT_GAUGE, metricFilter);
     }
 
+    /**
+     * Returns an immutable snapshot of all histograms, sorted by ID.
+     */
     @Override
     public java.util.SortedMap<MetricID, Histogram> getHistograms() {
         return getHistograms(MetricFilter.ALL);
     }
 
+    /**
+     * Returns an immutable snapshot of the histograms that match the filter, sorted by ID.
+     */
     @Override
     public java.util.SortedMap<MetricID, Histogram> getHistograms(MetricFilter metricFilter) {
         return getMetrics(MetricType.HISTOGRAM, metricFilter);
     }
 
+    /**
+     * Returns an immutable snapshot of all meters, sorted by ID.
+     */
     @Override
     public java.util.SortedMap<MetricID, Meter> getMeters() {
         return getMeters(MetricFilter.ALL);
     }
 
+    /**
+     * Returns an immutable snapshot of the meters that match the filter, sorted by ID.
+     */
     @Override
     public java.util.SortedMap<MetricID, Meter> getMeters(MetricFilter metricFilter) {
         return getMetrics(MetricType.METERED, metricFilter);
     }
 
+    /**
+     * Returns an immutable snapshot of all timers, sorted by ID.
+     */
     @Override
     public java.util.SortedMap<MetricID, Timer> getTimers() {
         return getTimers(MetricFilter.ALL);
     }
 
+    /**
+     * Returns an immutable snapshot of the timers that match the filter, sorted by ID.
+     */
     @Override
     public java.util.SortedMap<MetricID, Timer> getTimers(MetricFilter metricFilter) {
         return getMetrics(MetricType.TIMER, metricFilter);
     }
 
+    /**
+     * Returns an immutable snapshot of all metrics. Unlike in earlier versions, the map cannot be modified. The same
+     * instance is returned until the registry changes, so this is cheap to call repeatedly.
+     */
     @Override
     public Map<MetricID, Metric> getMetrics() {
+        return getSnapshot().getMetrics();
+    }
+
+    /**
+     * Returns an immutable snapshot of all metrics, their metadata and origins. A new snapshot is only taken
+     * when the registry changed since the previous one was taken, otherwise this is just a volatile read.
+     * The snapshot is consistent: every metric in it has its metadata.
+     */
+    public RegistrySnapshot getSnapshot() {
+        RegistrySnapshot current = snapshot;
+        if (current != null && current.getVersion() == version.get()) {
+            return current;
+        }
+        /*
+         * Like a seqlock, but with a separate counter for started and completed changes, because changes of different
+         * names run concurrently. The copy is only used if no change was in progress when it began, and no change
+         * began while it was taken. If the registry keeps changing, the copy is taken while holding all locks instead.
+         */
+        for (int attempt = 0; attempt < OPTIMISTIC_SNAPSHOT_ATTEMPTS; attempt++) {
+            long completed = version.get();
+            long started = startedChanges.get();
+            if (started != completed) {
+                Thread.yield();
+                continue;
+            }
+            RegistrySnapshot copy = new RegistrySnapshot(completed, metricMap, metadataMap, originMap);
+            if (startedChanges.get() == started) {
+                snapshot = copy;
+                return copy;
+            }
+        }
+        RegistrySnapshot copy = snapshotHoldingLocks(0);
+        snapshot = copy;
+        return copy;
+    }
+
+    // takes the locks in index order, every modification holds exactly one of them, so this cannot deadlock
+    private RegistrySnapshot snapshotHoldingLocks(int stripe) {
+        if (stripe == LOCK_STRIPES) {
+            return new RegistrySnapshot(version.get(), metricMap, metadataMap, originMap);
+        }
+        synchronized (locks[stripe]) {
+            return snapshotHoldingLocks(stripe + 1);
+        }
+    }
+
+    /*
+     * Point lookups of a single metric. Unlike getMetrics() and the typed getters, these don't copy or sort anything,
+     * so they are suitable for hot paths. The typed variants return null if the metric exists but is of another type.
+     */
+
+    public Metric getMetric(MetricID metricID) {
+        return metricMap.get(metricID);
+    }
+
+    public Gauge<?> getGauge(MetricID metricID) {
+        return getMetric(metricID, MetricType.GAUGE);
+    }
+
+    public Counter getCounter(MetricID metricID) {
+        return getMetric(metricID, MetricType.COUNTER);
+    }
 
-        return new HashMap<>(metricMap);
+    public ConcurrentGauge getConcurrentGauge(MetricID metricID) {
+        return getMetric(metricID, MetricType.CONCURRENT_GAUGE);
+    }
+
+    public Histogram getHistogram(MetricID metricID) {
+        return getMetric(metricID, MetricType.HISTOGRAM);
+    }
+
+    public Meter getMeter(MetricID metricID) {
+        return getMetric(metricID, MetricType.METERED);
+    }
+
+    public Timer getTimer(MetricID metricID) {
+        return getMetric(metricID, MetricType.TIMER);
+    }
+
+    /**
+     * Returns the IDs of all metrics with the given name, or an empty set if there are no such metrics.
+     * The returned set is an unmodifiable live view.
+     */
+    public Set<MetricID> getMetricIDs(String name) {
+        Set<MetricID> metricIDs = metricIdsByName.get(name);
+        return metricIDs != null ? Collections.unmodifiableSet(metricIDs) : Collections.emptySet();
+    }
+
+    /**
+     * Returns all metrics with the given name. The cost depends on the number of metrics with this name,
+     * not on the size of the registry.
+     */
+    public Map<MetricID, Metric> getMetrics(String name) {
+        Set<MetricID> metricIDs = metricIdsByName.get(name);
+        if (metricIDs == null) {
+            return Collections.emptyMap();
+        }
+        Map<MetricID, Metric> out = new HashMap<>();
+        for (MetricID metricID : metricIDs) {
+            Metric metric = metricMap.get(metricID);
+            if (metric != null) {
+                out.put(metricID, metric);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the metadata of metrics with the given name, or null if there are no such metrics.
+     */
+    public Metadata getMetadata(String name) {
+        return metadataMap.get(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Metric> T getMetric(MetricID metricID, MetricType type) {
+        return (T) metricsByType.get(type).get(metricID);
     }
 
     private Metadata sanitizeMetadata(Metadata metadata, MetricType metricType) {
@@ -522,17 +933,24 @@ public class MetricsRegistryImpl extends MetricRegistry {
         }
     }
 
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    /*
+     * Implements the typed getters, see the comment on getNames(). The result is an immutable snapshot for every
+     * filter, so callers see the same kind of map no matter which filter they pass.
+     */
     private <T extends Metric> SortedMap<MetricID, T> getMetrics(MetricType type, MetricFilter filter) {
-        SortedMap<MetricID, T> out = new TreeMap<>();
+        SortedMap<MetricID, Metric> partition = metricsByType.get(type);
+        if (filter == MetricFilter.ALL) {
+            return (SortedMap) Collections.unmodifiableSortedMap(new TreeMap<>(partition));
+        }
 
-        for (Map.Entry<MetricID, Metric> entry : metricMap.entrySet()) {
-            if (isSameType(entry.getValue(), type)) {
-                if (filter.matches(entry.getKey(), entry.getValue())) {
-                    out.put(entry.getKey(), (T) entry.getValue());
-                }
+        SortedMap<MetricID, T> out = new TreeMap<>();
+        for (Map.Entry<MetricID, Metric> entry : partition.entrySet()) {
+            if (filter.matches(entry.getKey(), entry.getValue())) {
+                out.put(entry.getKey(), (T) entry.getValue());
             }
         }
-        return out;
+        return Collections.unmodifiableSortedMap(out);
     }
 
     private boolean isSameType(Metric metricInstance, MetricType type) {
@@ -554,8 +972,60 @@ public class MetricsRegistryImpl extends MetricRegistry {
         }
     }
 
+    /**
+     * Returns the metric that an interceptor previously bound to the given member using
+     * {@link #bindMetric(MetricType, Class, Member, MetricID, Metric)}, or null if there is no such binding.
+     *
+     * @param type type of the metric, every member can have a binding for each of the metric types
+     * @param beanClass the intercepted bean class
+     * @param member the intercepted method or constructor
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Metric> T getBoundMetric(MetricType type, Class<?> beanClass, Member member) {
+        return (T) memberBindings.get(type, beanClass, member);
+    }
+
+    /**
+     * Remembers the metric resolved for an intercepted member, so that subsequent invocations of the member can use
+     * {@link #getBoundMetric(MetricType, Class, Member)} instead of resolving the metric again.
+     * The binding is dropped as soon as the metric is removed from this registry.
+     */
+    public void bindMetric(MetricType type, Class<?> beanClass, Member member, MetricID metricID, Metric metric) {
+        memberBindings.bind(type, beanClass, member, metric);
+        // if the metric was removed in the meantime, make sure that the binding does not outlive it
+        if (metricMap.get(metricID) != metric) {
+            memberBindings.unbind(metric);
+        }
+    }
+
+    // called when the registry is discarded, so that it no longer references the intercepted bean classes
+    void clearMemberBindings() {
+        memberBindings.clear();
+    }
+
+    // called when the registry is discarded, so that the shared ticker stops once no registry has meters left
+    void stopTickingMeters() {
+        Optional<MeterTicker> ticker = meterTicker;
+        if (ticker == null || !ticker.isPresent()) {
+            return;
+        }
+        Set<MeterImpl> meters = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Metric metric : metricMap.values()) {
+            if (metric instanceof MeterImpl) {
+                meters.add((MeterImpl) metric);
+            } else if (metric instanceof TimerImpl) {
+                meters.add((MeterImpl) ((TimerImpl) metric).getMeter());
+            }
+        }
+        ticker.get().unregister(meters);
+    }
+
+    /**
+     * Returns an immutable snapshot of the metadata of all metrics, by name. Unlike in earlier versions, the map cannot
+     * be modified. The same instance is returned until the registry changes, so this is cheap to call repeatedly.
+     */
     @Override
-    public synchronized Map<String, Metadata> getMetadata() {
-        return new HashMap<>(metadataMap);
+    public Map<String, Metadata> getMetadata() {
+        return getSnapshot().getMetadata();
     }
 }
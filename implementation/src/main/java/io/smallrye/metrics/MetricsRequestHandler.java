@@ -16,20 +16,33 @@
  */
 package io.smallrye.metrics;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.enterprise.context.ApplicationScoped;
 
-import org.eclipse.microprofile.metrics.Metric;
-import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
 
 import io.smallrye.metrics.exporters.Exporter;
 import io.smallrye.metrics.exporters.JsonExporter;
@@ -48,6 +61,23 @@ public class MetricsRequestHandler {
     private static final String TEXT_PLAIN = "text/plain";
     private static final String APPLICATION_JSON = "application/json";
     private static final String STAR_STAR = "*/*";
+    // chars buffered before they are encoded and written to a StreamingResponder
+    private static final int BUFFER_SIZE = 8192;
+
+    // The compression level (0-9, or -1 for the default of the Deflater) of compressed responses.
+    public static final String SMALLRYE_METRICS_COMPRESSION_LEVEL = "smallrye.metrics.compressionLevel";
+    // Responses smaller than this many bytes are not compressed even if the client accepts it.
+    // A negative value turns compression off.
+    public static final String SMALLRYE_METRICS_COMPRESSION_MIN_SIZE = "smallrye.metrics.compressionMinSize";
+
+    private static final Logger log = Logger.getLogger(MetricsRequestHandler.class);
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+
+    // the exporters and settings read from the config, created on the first request and after refreshConfig()
+    private volatile Configuration configuration;
 
     static {
         corsHeaders = new HashMap<>();
@@ -57,6 +87,33 @@ public class MetricsRequestHandler {
         corsHeaders.put("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS, HEAD");
     }
 
+    public MetricsRequestHandler() {
+    }
+
+    MetricsRequestHandler(int compressionLevel, int compressionMinSize) {
+        this.configuration = new Configuration(true, true, true, compressionLevel, compressionMinSize);
+    }
+
+    /**
+     * Makes the handler read its configuration and that of the exporters again on the next request. The exporters
+     * are created with the configuration on the first request, and then used for all requests until this is called.
+     * Nothing in this library calls it: integrations whose configuration can change at runtime are expected to call
+     * it after such a change.
+     */
+    public void refreshConfig() {
+        configuration = null;
+    }
+
+    private Configuration configuration() {
+        Configuration current = configuration;
+        if (current == null) {
+            // concurrent first requests may read the config more than once, which is harmless
+            current = Configuration.fromConfig();
+            configuration = current;
+        }
+        return current;
+    }
+
     /**
      * @param requestPath e.g. request.getRequestURI for an HttpServlet
      * @param method http method (GET, POST, etc)
@@ -90,7 +147,32 @@ public class MetricsRequestHandler {
             String method,
             Stream<String> acceptHeaders,
             Responder responder) throws IOException {
-        Exporter exporter = obtainExporter(method, acceptHeaders, responder);
+        handleRequest(requestPath, contextRoot, method, acceptHeaders, null, responder);
+    }
+
+    /**
+     * Like {@link #handleRequest(String, String, String, Stream, Responder)}, but also compresses the response if
+     * the client accepts a compressed response. Only responses of a {@link StreamingResponder} are compressed.
+     *
+     * @param requestPath e.g. request.getRequestURI for an HttpServlet
+     * @param contextRoot the root at which Metrics are exposed, usually "/metrics"
+     * @param method http method (GET, POST, etc)
+     * @param acceptHeaders accepted content types
+     * @param acceptEncodingHeaders accepted content encodings, or null if the response should not be compressed. If
+     *        it is not null and compression is enabled, the response has a {@code Vary: Accept-Encoding} header, even
+     *        if the request had no Accept-Encoding header.
+     * @param responder a method that returns a response to the caller. See {@link Responder}
+     *
+     * @throws IOException rethrows IOException if thrown by the responder
+     */
+    public void handleRequest(String requestPath,
+            String contextRoot,
+            String method,
+            Stream<String> acceptHeaders,
+            Stream<String> acceptEncodingHeaders,
+            Responder responder) throws IOException {
+        Configuration configuration = configuration();
+        Exporter exporter = obtainExporter(method, acceptHeaders, responder, configuration);
         if (exporter == null) {
             return;
         }
@@ -110,35 +192,35 @@ public class MetricsRequestHandler {
             scopePath = scopePath.substring(0, scopePath.length() - 1);
         }
 
-        StringBuilder sb;
+        // null if all scopes are exported
+        MetricRegistry.Type scope = null;
+        // null if all metrics of the scope are exported
+        String metricName = null;
         if (scopePath.isEmpty()) {
             // All metrics
-            sb = exporter.exportAllScopes();
 
         } else if (scopePath.contains("/")) {
             // One metric name in a scope
 
-            String metricName = scopePath.substring(scopePath.indexOf('/') + 1);
+            metricName = scopePath.substring(scopePath.indexOf('/') + 1);
 
-            MetricRegistry.Type scope = getScopeFromPath(scopePath.substring(0, scopePath.indexOf('/')));
+            scope = getScopeFromPath(scopePath.substring(0, scopePath.indexOf('/')));
             if (scope == null) {
                 responder.respondWith(404, "Scope " + scopePath + " not found", Collections.emptyMap());
                 return;
             }
 
-            MetricRegistry registry = MetricRegistries.get(scope);
-            Map<MetricID, Metric> metricValuesMap = registry.getMetrics();
+            MetricsRegistryImpl registry = (MetricsRegistryImpl) MetricRegistries.get(scope);
 
-            if (metricValuesMap.keySet().stream().anyMatch(id -> id.getName().equals(metricName))) {
-                sb = exporter.exportMetricsByName(scope, metricName);
-            } else {
+            // metadata can outlive the metrics of its name, which would be an empty export
+            if (registry.getMetadata(metricName) == null || registry.getMetricIDs(metricName).isEmpty()) {
                 responder.respondWith(404, "Metric " + scopePath + " not found", Collections.emptyMap());
                 return;
             }
         } else {
             // A single scope
 
-            MetricRegistry.Type scope = getScopeFromPath(scopePath);
+            scope = getScopeFromPath(scopePath);
             if (scope == null) {
                 responder.respondWith(404, "Scope " + scopePath + " not found", Collections.emptyMap());
                 return;
@@ -149,8 +231,6 @@ public class MetricsRequestHandler {
                 responder.respondWith(204, "No data in scope " + scopePath, Collections.emptyMap());
                 return;
             }
-
-            sb = exporter.exportOneScope(scope);
         }
 
         Map<String, String> headers = new HashMap<>();
@@ -158,8 +238,50 @@ public class MetricsRequestHandler {
         headers.put("Access-Control-Max-Age", "1209600");
         headers.putAll(corsHeaders);
 
-        responder.respondWith(200, sb.toString(), headers);
+        if (responder instanceof StreamingResponder) {
+            StreamingResponder streamingResponder = (StreamingResponder) responder;
+            Optional<String> encoding = Optional.empty();
+            if (configuration.compressionMinSize >= 0 && acceptEncodingHeaders != null) {
+                // the response depends on Accept-Encoding even when it is sent uncompressed, caches have to know
+                headers.put("Vary", "Accept-Encoding");
+                encoding = getBestMatchingEncoding(acceptEncodingHeaders);
+            }
+            if (encoding.isPresent()) {
+                try (CompressibleBody body = new CompressibleBody(streamingResponder, headers, encoding.get(),
+                        configuration)) {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), BUFFER_SIZE);
+                    export(exporter, scope, metricName, writer);
+                    writer.flush();
+                    body.finish();
+                }
+            } else {
+                OutputStream body = streamingResponder.respondWith(200, headers);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), BUFFER_SIZE);
+                export(exporter, scope, metricName, writer);
+                writer.flush();
+            }
+        } else {
+            StringBuilder sb;
+            if (scope == null) {
+                sb = exporter.exportAllScopes();
+            } else if (metricName != null) {
+                sb = exporter.exportMetricsByName(scope, metricName);
+            } else {
+                sb = exporter.exportOneScope(scope);
+            }
+            responder.respondWith(200, sb.toString(), headers);
+        }
+    }
 
+    private void export(Exporter exporter, MetricRegistry.Type scope, String metricName, Writer writer)
+            throws IOException {
+        if (scope == null) {
+            exporter.exportAllScopes(writer);
+        } else if (metricName != null) {
+            exporter.exportMetricsByName(scope, metricName, writer);
+        } else {
+            exporter.exportOneScope(scope, writer);
+        }
     }
 
     private MetricRegistry.Type getScopeFromPath(String scopePath) throws IOException {
@@ -178,17 +300,19 @@ public class MetricsRequestHandler {
      * @param method http method (GET, POST, etc)
      * @param acceptHeaders accepted content types
      * @param responder the responder to use if an error occurs
+     * @param configuration the configuration holding the exporter instances
      * @return An exporter instance. If an exporter cannot be obtained for some reason, this method will use the responder
      *         to inform the user and will return null.
      */
-    private Exporter obtainExporter(String method, Stream<String> acceptHeaders, Responder responder) throws IOException {
+    private Exporter obtainExporter(String method, Stream<String> acceptHeaders, Responder responder,
+            Configuration configuration) throws IOException {
         if (!method.equals("GET") && !method.equals("OPTIONS")) {
             responder.respondWith(405, "Only GET and OPTIONS methods are accepted.", Collections.emptyMap());
             return null;
         } else if (acceptHeaders == null) {
             // use OpenMetrics exporter
             if (method.equals("GET")) {
-                return new OpenMetricsExporter();
+                return configuration.openMetricsExporter;
             } else {
                 responder.respondWith(405, "OPTIONS method is only allowed with application/json media type.",
                         Collections.emptyMap());
@@ -203,14 +327,14 @@ public class MetricsRequestHandler {
                 if (mediaType.startsWith(APPLICATION_JSON)) {
 
                     if (method.equals("GET")) {
-                        return new JsonExporter();
+                        return configuration.jsonExporter;
                     } else {
-                        return new JsonMetadataExporter();
+                        return configuration.jsonMetadataExporter;
                     }
                 } else {
                     // This is the fallback, but only for GET, as OpenMetrics does not support OPTIONS
                     if (method.equals("GET")) {
-                        return new OpenMetricsExporter();
+                        return configuration.openMetricsExporter;
                     } else {
                         responder.respondWith(406, "OPTIONS method is only allowed with application/json media type.",
                                 Collections.emptyMap());
@@ -285,6 +409,51 @@ public class MetricsRequestHandler {
         return tuple.type.equals(TEXT_PLAIN) || tuple.type.equals(APPLICATION_JSON) || tuple.type.equals(STAR_STAR);
     }
 
+    /**
+     * Find the content encoding to compress the response with: gzip or deflate, whichever has the higher priority,
+     * with gzip preferred if both have the same. Encodings that are not listed get the priority of *, if present.
+     *
+     * @param acceptEncodingHeaders A stream of Accept-Encoding: headers, may be null
+     * @return gzip or deflate, or empty if the response should not be compressed
+     */
+    Optional<String> getBestMatchingEncoding(Stream<String> acceptEncodingHeaders) {
+        if (acceptEncodingHeaders == null) {
+            return Optional.empty();
+        }
+
+        Map<String, Float> prios = new HashMap<>();
+        Iterator<String> codings = acceptEncodingHeaders.flatMap(h -> Arrays.stream(h.split(","))).iterator();
+        while (codings.hasNext()) {
+            String[] parts = codings.next().split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (coding.equals("x-gzip")) {
+                coding = GZIP;
+            }
+            float prio = 1.0f;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        prio = Float.parseFloat(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        prio = 0;
+                    }
+                }
+            }
+            prios.merge(coding, prio, Math::max);
+        }
+
+        float any = prios.getOrDefault("*", 0f);
+        float gzip = prios.getOrDefault(GZIP, any);
+        float deflate = prios.getOrDefault(DEFLATE, any);
+        if (gzip > 0 && gzip >= deflate) {
+            return Optional.of(GZIP);
+        } else if (deflate > 0) {
+            return Optional.of(DEFLATE);
+        }
+        return Optional.empty();
+    }
+
     /**
      * Responder is used by MetricsRequestHandler to return a response to the caller
      */
@@ -300,6 +469,166 @@ public class MetricsRequestHandler {
         void respondWith(int status, String message, Map<String, String> headers) throws IOException;
     }
 
+    /**
+     * A {@link Responder} that can also stream the body of a response. The request handler uses it for successful
+     * exports, so that the export is written to the response as it is produced instead of being built as a String
+     * first. Error responses still use {@link #respondWith(int, String, Map)}.
+     */
+    public interface StreamingResponder extends Responder {
+        /**
+         * Starts a response. The body is written to the returned stream, which the request handler flushes but
+         * does not close.
+         * <p>
+         * If the response is compressed, the headers contain {@code Content-Encoding}, and the bytes written to the
+         * stream are already encoded. They have to be sent as they are.
+         *
+         * @param status http status code
+         * @param headers a map of http headers
+         * @return the stream to write the body of the response to
+         * @throws IOException this method may be implemented to throw an IOException.
+         *         In such case the {@link MetricsRequestHandler#handleRequest(String, String, Stream, Responder)} will
+         *         propagate the exception
+         */
+        OutputStream respondWith(int status, Map<String, String> headers) throws IOException;
+    }
+
+    /*
+     * The body of a response that the client accepts compressed. The first bytes are held back until it is known
+     * whether the body reaches the minimum size for compression, bodies smaller than that are sent uncompressed.
+     * Closing it releases the Deflater but leaves the stream of the responder open.
+     */
+    private static class CompressibleBody extends OutputStream {
+
+        private final StreamingResponder responder;
+        private final Map<String, String> headers;
+        private final String encoding;
+        private final int compressionLevel;
+        private final int compressionMinSize;
+
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private Deflater deflater;
+        private DeflaterOutputStream compressed;
+
+        CompressibleBody(StreamingResponder responder, Map<String, String> headers, String encoding,
+                Configuration configuration) {
+            this.responder = responder;
+            this.headers = headers;
+            this.encoding = encoding;
+            this.compressionLevel = configuration.compressionLevel;
+            this.compressionMinSize = configuration.compressionMinSize;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (compressed != null) {
+                compressed.write(b, off, len);
+                return;
+            }
+            pending.write(b, off, len);
+            if (pending.size() >= compressionMinSize) {
+                startCompressing();
+            }
+        }
+
+        private void startCompressing() throws IOException {
+            headers.put("Content-Encoding", encoding);
+            OutputStream body = responder.respondWith(200, headers);
+            if (encoding.equals(GZIP)) {
+                LeveledGZIPOutputStream gzip = new LeveledGZIPOutputStream(body, compressionLevel);
+                deflater = gzip.deflater();
+                compressed = gzip;
+            } else {
+                deflater = new Deflater(compressionLevel);
+                compressed = new DeflaterOutputStream(body, deflater, BUFFER_SIZE);
+            }
+            pending.writeTo(compressed);
+            pending = null;
+        }
+
+        /*
+         * Sends the rest of the body, and the whole body if it is too small to be compressed.
+         */
+        void finish() throws IOException {
+            if (compressed == null) {
+                OutputStream body = responder.respondWith(200, headers);
+                pending.writeTo(body);
+                body.flush();
+            } else {
+                compressed.finish();
+                compressed.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /*
+     * The exporters, which are thread-safe and shared by all requests, and the compression settings. All of them are
+     * read from one lookup of the config.
+     */
+    private static class Configuration {
+        private final OpenMetricsExporter openMetricsExporter;
+        private final JsonExporter jsonExporter;
+        private final JsonMetadataExporter jsonMetadataExporter = new JsonMetadataExporter();
+        private final int compressionLevel;
+        private final int compressionMinSize;
+
+        Configuration(boolean usePrefixForScope, boolean writeHelpLine, boolean jsonPrettyPrinting,
+                int compressionLevel, int compressionMinSize) {
+            if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("Invalid " + SMALLRYE_METRICS_COMPRESSION_LEVEL + "="
+                        + compressionLevel + ", the level has to be between 0 and 9, or -1 for the default");
+            }
+            this.openMetricsExporter = new OpenMetricsExporter(usePrefixForScope, writeHelpLine);
+            this.jsonExporter = new JsonExporter(jsonPrettyPrinting);
+            this.compressionLevel = compressionLevel;
+            this.compressionMinSize = compressionMinSize;
+        }
+
+        static Configuration fromConfig() {
+            Config config;
+            try {
+                config = ConfigProvider.getConfig();
+            } catch (IllegalStateException e) {
+                log.debug("No MicroProfile Config available, using the default settings", e);
+                return new Configuration(true, true, true, Deflater.DEFAULT_COMPRESSION, DEFAULT_COMPRESSION_MIN_SIZE);
+            }
+            return new Configuration(
+                    config.getOptionalValue(OpenMetricsExporter.SMALLRYE_METRICS_USE_PREFIX_FOR_SCOPE, Boolean.class)
+                            .orElse(true),
+                    !config.getOptionalValue(OpenMetricsExporter.MICROPROFILE_METRICS_OMIT_HELP_LINE, Boolean.class)
+                            .orElse(false),
+                    config.getOptionalValue(JsonExporter.SMALLRYE_METRICS_JSON_PRETTY_PRINTING, Boolean.class)
+                            .orElse(true),
+                    config.getOptionalValue(SMALLRYE_METRICS_COMPRESSION_LEVEL, Integer.class)
+                            .orElse(Deflater.DEFAULT_COMPRESSION),
+                    config.getOptionalValue(SMALLRYE_METRICS_COMPRESSION_MIN_SIZE, Integer.class)
+                            .orElse(DEFAULT_COMPRESSION_MIN_SIZE));
+        }
+    }
+
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+        LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+
+        Deflater deflater() {
+            return def;
+        }
+    }
+
     /**
      * Helper object for media type matching
      */
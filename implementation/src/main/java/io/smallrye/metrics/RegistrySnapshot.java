@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricID;
+
+/**
+ * Immutable view of the contents of a {@link MetricsRegistryImpl} at some point in time.
+ * The registry publishes a new snapshot only after metrics were registered or removed, so obtaining the snapshot
+ * repeatedly (for example once per scrape) does not copy anything.
+ * Metric instances themselves are live, only the set of metrics is frozen.
+ */
+public final class RegistrySnapshot {
+
+    private final long version;
+
+    private final Map<MetricID, Metric> metrics;
+
+    private final Map<String, Metadata> metadata;
+
+    private final Map<MetricID, Object> origins;
+
+    RegistrySnapshot(long version, Map<MetricID, Metric> metrics, Map<String, Metadata> metadata,
+            Map<MetricID, Object> origins) {
+        this.version = version;
+        this.metrics = Collections.unmodifiableMap(new HashMap<>(metrics));
+        this.metadata = Collections.unmodifiableMap(new HashMap<>(metadata));
+        this.origins = Collections.unmodifiableMap(new HashMap<>(origins));
+    }
+
+    /**
+     * Number of changes that had been made to the registry when this snapshot was taken. Increases with every
+     * registration and removal, so two snapshots with the same version have the same contents.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Map<MetricID, Metric> getMetrics() {
+        return metrics;
+    }
+
+    public Map<String, Metadata> getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Origins of metrics registered through CDI (annotated members, injection points), keyed by MetricID.
+     */
+    public Map<MetricID, Object> getOrigins() {
+        return origins;
+    }
+}
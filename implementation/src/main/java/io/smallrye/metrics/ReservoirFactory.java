@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+
+import io.smallrye.metrics.app.Clock;
+import io.smallrye.metrics.app.DDSketchReservoir;
+import io.smallrye.metrics.app.ExponentiallyDecayingReservoir;
+import io.smallrye.metrics.app.FixedBucketReservoir;
+import io.smallrye.metrics.app.LogLinearReservoir;
+import io.smallrye.metrics.app.Reservoir;
+import io.smallrye.metrics.app.SlidingTimeWindowReservoir;
+import io.smallrye.metrics.app.SlidingWindowReservoir;
+
+/**
+ * Creates the reservoirs of histograms and timers, as configured by properties of the form
+ * <pre>
+ * smallrye.metrics.reservoir.&lt;pattern&gt;=&lt;type&gt;[,&lt;parameter&gt;=&lt;value&gt;]...
+ * </pre>
+ * The pattern is a regular expression matched against the whole metric name. It can be prefixed with a scope
+ * ({@code application:}, {@code base:} or {@code vendor:}) to only match metrics in that scope. If several patterns
+ * match, those with a scope take precedence over those without, and longer patterns take precedence over shorter ones.
+ * Metrics that no pattern matches get an {@link ExponentiallyDecayingReservoir}.
+ * <p>
+ * The types and their parameters are:
+ * <ul>
+ * <li>{@code decaying}: {@link ExponentiallyDecayingReservoir}, with {@code size} and {@code alpha}</li>
+ * <li>{@code hdr}: {@link LogLinearReservoir}, with {@code highest} (the highest trackable value, one hour in
+ * nanoseconds by default) and {@code digits} (the number of significant digits)</li>
+ * <li>{@code window}: {@link SlidingTimeWindowReservoir}, with {@code seconds} (the length of the window) and
+ * {@code samples} (the number of values kept per second, 64 by default)</li>
+ * <li>{@code count-window}: {@link SlidingWindowReservoir}, with {@code size}</li>
+ * <li>{@code sketch}: {@link DDSketchReservoir}, with {@code accuracy} (the relative accuracy)</li>
+ * <li>{@code buckets}: {@link FixedBucketReservoir}, with {@code boundaries} (the upper boundaries of the buckets
+ * separated by semicolons, required). Metrics with this reservoir are exported as OpenMetrics histograms.</li>
+ * </ul>
+ * For example, {@code smallrye.metrics.reservoir.application:slo_.*=hdr,digits=3} gives all application metrics
+ * whose names start with {@code slo_} a reservoir tracking values to 3 significant digits. Note that the colon
+ * has to be escaped in a properties file.
+ */
+public class ReservoirFactory {
+
+    public static final String SMALLRYE_METRICS_RESERVOIR_PREFIX = "smallrye.metrics.reservoir.";
+
+    private static final Logger log = Logger.getLogger(ReservoirFactory.class);
+
+    private static final Comparator<Rule> PRECEDENCE = Comparator.<Rule, Boolean> comparing(rule -> rule.scope == null)
+            .thenComparing(rule -> -rule.pattern.pattern().length())
+            .thenComparing(rule -> rule.pattern.pattern());
+
+    private final List<Rule> rules;
+
+    ReservoirFactory(Map<String, String> properties) {
+        List<Rule> parsed = new ArrayList<>();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            if (property.getKey().startsWith(SMALLRYE_METRICS_RESERVOIR_PREFIX)) {
+                parsed.add(parseRule(property.getKey(), property.getValue()));
+            }
+        }
+        parsed.sort(PRECEDENCE);
+        this.rules = parsed;
+    }
+
+    /**
+     * Creates a factory configured by the {@code smallrye.metrics.reservoir.*} properties of the MicroProfile Config
+     * of the current application. If there is no MicroProfile Config implementation, all reservoirs will be
+     * {@link ExponentiallyDecayingReservoir}s.
+     *
+     * @return the reservoir factory
+     */
+    public static ReservoirFactory fromConfig() {
+        Config config;
+        try {
+            config = ConfigProvider.getConfig();
+        } catch (IllegalStateException e) {
+            log.debug("No MicroProfile Config available, using the default reservoir for all metrics", e);
+            return new ReservoirFactory(new HashMap<>());
+        }
+        Map<String, String> properties = new HashMap<>();
+        for (String name : config.getPropertyNames()) {
+            if (name.startsWith(SMALLRYE_METRICS_RESERVOIR_PREFIX)) {
+                config.getOptionalValue(name, String.class).ifPresent(value -> properties.put(name, value));
+            }
+        }
+        return new ReservoirFactory(properties);
+    }
+
+    /**
+     * Creates the reservoir for a histogram or timer.
+     *
+     * @param scope the scope of the registry of the metric, or null if it is not known
+     * @param name the name of the metric
+     * @return a new reservoir
+     */
+    public Reservoir create(MetricRegistry.Type scope, String name) {
+        for (Rule rule : rules) {
+            if ((rule.scope == null || rule.scope == scope) && rule.pattern.matcher(name).matches()) {
+                return rule.reservoir.get();
+            }
+        }
+        return new ExponentiallyDecayingReservoir();
+    }
+
+    private static Rule parseRule(String key, String value) {
+        String pattern = key.substring(SMALLRYE_METRICS_RESERVOIR_PREFIX.length());
+        MetricRegistry.Type scope = null;
+        for (MetricRegistry.Type type : MetricRegistry.Type.values()) {
+            String prefix = type.getName() + ":";
+            if (pattern.startsWith(prefix)) {
+                scope = type;
+                pattern = pattern.substring(prefix.length());
+                break;
+            }
+        }
+        try {
+            return new Rule(scope, Pattern.compile(pattern), parseReservoir(value));
+        } catch (IllegalArgumentException e) {
+            // also covers PatternSyntaxException and NumberFormatException
+            throw new IllegalArgumentException("Invalid reservoir configuration " + key + "=" + value + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private static Supplier<Reservoir> parseReservoir(String value) {
+        String[] parts = value.split(",");
+        String type = parts[0].trim();
+        Map<String, String> parameters = new HashMap<>();
+        for (int i = 1; i < parts.length; i++) {
+            String[] parameter = parts[i].split("=", 2);
+            if (parameter.length != 2) {
+                throw new IllegalArgumentException("Parameter " + parts[i].trim() + " has no value");
+            }
+            parameters.put(parameter[0].trim(), parameter[1].trim());
+        }
+
+        Supplier<Reservoir> reservoir;
+        switch (type) {
+            case "decaying": {
+                int size = intParameter(parameters, "size", 1028);
+                double alpha = doubleParameter(parameters, "alpha", 0.015);
+                reservoir = () -> new ExponentiallyDecayingReservoir(size, alpha);
+                break;
+            }
+            case "hdr": {
+                long highest = longParameter(parameters, "highest", TimeUnit.HOURS.toNanos(1));
+                int digits = intParameter(parameters, "digits", 2);
+                reservoir = () -> new LogLinearReservoir(highest, digits);
+                break;
+            }
+            case "window": {
+                long seconds = longParameter(parameters, "seconds", 60);
+                int samples = intParameter(parameters, "samples", 64);
+                reservoir = () -> new SlidingTimeWindowReservoir(seconds, TimeUnit.SECONDS, samples, Clock.defaultClock());
+                break;
+            }
+            case "count-window": {
+                int size = intParameter(parameters, "size", 1028);
+                reservoir = () -> new SlidingWindowReservoir(size);
+                break;
+            }
+            case "sketch": {
+                double accuracy = doubleParameter(parameters, "accuracy", 0.01);
+                reservoir = () -> new DDSketchReservoir(accuracy);
+                break;
+            }
+            case "buckets": {
+                String boundaries = parameters.remove("boundaries");
+                if (boundaries == null) {
+                    throw new IllegalArgumentException("Reservoir type buckets requires the boundaries parameter");
+                }
+                long[] parsed = Arrays.stream(boundaries.split(";")).map(String::trim).mapToLong(Long::parseLong).toArray();
+                reservoir = () -> new FixedBucketReservoir(parsed);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown reservoir type " + type);
+        }
+        if (!parameters.isEmpty()) {
+            throw new IllegalArgumentException("Unknown parameters " + parameters.keySet() + " for reservoir type " + type);
+        }
+        // fail on invalid parameters now rather than when the first metric is created
+        reservoir.get();
+        return reservoir;
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.remove(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long longParameter(Map<String, String> parameters, String name, long defaultValue) {
+        String value = parameters.remove(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    private static double doubleParameter(Map<String, String> parameters, String name, double defaultValue) {
+        String value = parameters.remove(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static class Rule {
+        private final MetricRegistry.Type scope;
+        private final Pattern pattern;
+        private final Supplier<Reservoir> reservoir;
+
+        Rule(MetricRegistry.Type scope, Pattern pattern, Supplier<Reservoir> reservoir) {
+            this.scope = scope;
+            this.pattern = pattern;
+            this.reservoir = reservoir;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A {@link Snapshot} of values that have been counted in buckets. Every bucket is represented by a single value and
+ * the number of recorded values that fell into it, so the size of the snapshot only depends on the number of
+ * non-empty buckets, not on the number of recorded values.
+ */
+public class BucketSnapshot extends Snapshot {
+
+    private final long[] values;
+    // cumulative counts, cumulativeCounts[i] is the number of recorded values up to and including bucket i
+    private final long[] cumulativeCounts;
+    private final long totalCount;
+
+    /**
+     * Create a new {@link Snapshot} in which each of the given values is counted once.
+     *
+     * @param values an unordered set of values
+     */
+    public BucketSnapshot(long[] values) {
+        this.values = Arrays.copyOf(values, values.length);
+        Arrays.sort(this.values);
+        this.cumulativeCounts = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            cumulativeCounts[i] = i + 1;
+        }
+        this.totalCount = values.length;
+    }
+
+    /**
+     * Create a new {@link Snapshot} from the given buckets.
+     *
+     * @param values the values representing the buckets, in ascending order
+     * @param counts the number of recorded values in each bucket, none of them negative
+     */
+    public BucketSnapshot(long[] values, long[] counts) {
+        if (values.length != counts.length) {
+            throw new IllegalArgumentException("Got " + values.length + " values, but " + counts.length + " counts");
+        }
+        this.values = Arrays.copyOf(values, values.length);
+        this.cumulativeCounts = new long[counts.length];
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i];
+            cumulativeCounts[i] = sum;
+        }
+        this.totalCount = sum;
+    }
+
+    /**
+     * Returns the value at the given quantile, which is the value of the bucket that holds the recorded value of
+     * that rank.
+     *
+     * @param quantile a given quantile, in {@code [0..1]}
+     * @return the value in the distribution at {@code quantile}
+     */
+    @Override
+    public double getValue(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+            throw new IllegalArgumentException(quantile + " is not in [0..1]");
+        }
+
+        if (totalCount == 0) {
+            return 0.0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * totalCount));
+        int pos = Arrays.binarySearch(cumulativeCounts, rank);
+        if (pos < 0) {
+            pos = -pos - 1;
+        } else {
+            // empty buckets repeat the cumulative count of their predecessor, go to the first one that reached it
+            while (pos > 0 && cumulativeCounts[pos - 1] == rank) {
+                pos--;
+            }
+        }
+        return values[Math.min(pos, values.length - 1)];
+    }
+
+    /**
+     * Returns the number of recorded values in the snapshot.
+     *
+     * @return the number of values
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(totalCount, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the values representing the non-empty buckets of the snapshot. Each of them appears once, no matter
+     * how many recorded values fell into its bucket.
+     *
+     * @return the values of the non-empty buckets
+     */
+    @Override
+    public long[] getValues() {
+        long[] result = new long[values.length];
+        int n = 0;
+        long previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (cumulativeCounts[i] > previous) {
+                result[n++] = values[i];
+            }
+            previous = cumulativeCounts[i];
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Returns the value of the highest non-empty bucket.
+     *
+     * @return the highest value
+     */
+    @Override
+    public long getMax() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        return (long) getValue(1.0);
+    }
+
+    /**
+     * Returns the value of the lowest non-empty bucket.
+     *
+     * @return the lowest value
+     */
+    @Override
+    public long getMin() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        return (long) getValue(0.0);
+    }
+
+    /**
+     * Returns the arithmetic mean of the values in the snapshot.
+     *
+     * @return the arithmetic mean
+     */
+    @Override
+    public double getMean() {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        double sum = 0;
+        long previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += (double) values[i] * (cumulativeCounts[i] - previous);
+            previous = cumulativeCounts[i];
+        }
+        return sum / totalCount;
+    }
+
+    /**
+     * Returns the standard deviation of the values in the snapshot.
+     *
+     * @return the standard deviation value
+     */
+    @Override
+    public double getStdDev() {
+        // two-pass algorithm for variance, avoids numeric overflow
+
+        if (totalCount <= 1) {
+            return 0;
+        }
+
+        final double mean = getMean();
+        double variance = 0;
+        long previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            final double diff = values[i] - mean;
+            variance += (cumulativeCounts[i] - previous) * diff * diff;
+            previous = cumulativeCounts[i];
+        }
+
+        return Math.sqrt(variance / totalCount);
+    }
+
+    /**
+     * Writes the values of the non-empty buckets of the snapshot to the given stream, together with the number of
+     * recorded values in each bucket.
+     *
+     * @param output an output stream
+     */
+    @Override
+    public void dump(OutputStream output) {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, UTF_8))) {
+            long previous = 0;
+            for (int i = 0; i < values.length; i++) {
+                long count = cumulativeCounts[i] - previous;
+                if (count > 0) {
+                    out.printf("%d %d%n", values[i], count);
+                }
+                previous = cumulativeCounts[i];
+            }
+        }
+    }
+}
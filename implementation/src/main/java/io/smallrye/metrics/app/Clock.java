@@ -31,6 +31,8 @@
  */
 package io.smallrye.metrics.app;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * An abstraction for how time passes. It is passed to {@link org.eclipse.microprofile.metrics.Timer} to track timing.
  */
@@ -61,6 +63,19 @@ public abstract class Clock {
         return UserTimeClockHolder.DEFAULT;
     }
 
+    /**
+     * A clock that only advances every 10 milliseconds. It is meant for deciding when a new interval starts, not for
+     * measuring durations.
+     * <p>
+     * All callers share one instance. It reads the system clocks and truncates them, so it does not need a background
+     * thread that would have to be stopped.
+     *
+     * @return the shared coarse {@link Clock} instance
+     */
+    public static Clock coarseClock() {
+        return CoarseClockHolder.DEFAULT;
+    }
+
     /**
      * A clock implementation which returns the current time in epoch nanoseconds.
      */
@@ -74,4 +89,26 @@ public abstract class Clock {
     private static class UserTimeClockHolder {
         private static final Clock DEFAULT = new UserTimeClock();
     }
+
+    // truncates the system clocks to the resolution, so that all readers within the same interval see the same time
+    private static class CoarseClock extends Clock {
+        private static final long RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+        private static final long RESOLUTION_MILLIS = 10;
+
+        @Override
+        public long getTick() {
+            final long tick = System.nanoTime();
+            return tick - Math.floorMod(tick, RESOLUTION_NANOS);
+        }
+
+        @Override
+        public long getTime() {
+            final long time = System.currentTimeMillis();
+            return time - time % RESOLUTION_MILLIS;
+        }
+    }
+
+    private static class CoarseClockHolder {
+        private static final Clock DEFAULT = new CoarseClock();
+    }
 }
@@ -32,10 +32,14 @@
 package io.smallrye.metrics.app;
 
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.microprofile.metrics.ConcurrentGauge;
 
 /**
+ * A concurrent gauge that does not lock. The count and the extremes of the current minute are updated with atomic
+ * operations, and a new minute is started by atomically replacing the state of the current minute.
+ *
  * @author Jan Martiska
  */
 public class ConcurrentGaugeImpl implements ConcurrentGauge {
@@ -43,89 +47,100 @@ public class ConcurrentGaugeImpl implements ConcurrentGauge {
     // current count of concurrent invocations
     private final AtomicLong count;
 
-    // maximum count achieved in previous minute
-    private final AtomicLong max_previousMinute;
-    // minimum count achieved in previous minute
-    private final AtomicLong min_previousMinute;
-
-    // maximum count achieved in this minute
-    private final AtomicLong max_thisMinute;
-    // minimum count achieved in this minute
-    private final AtomicLong min_thisMinute;
+    // the current minute, replaced when a new minute starts
+    private final AtomicReference<Minute> minute;
 
-    // current timestamp rounded down to the last whole minute
-    private final AtomicLong thisMinute;
+    private final Clock clock;
 
     public ConcurrentGaugeImpl() {
-        count = new AtomicLong(0);
-        max_previousMinute = new AtomicLong(0);
-        min_previousMinute = new AtomicLong(0);
-        max_thisMinute = new AtomicLong(0);
-        min_thisMinute = new AtomicLong(0);
-        thisMinute = new AtomicLong(getCurrentMinuteFromSystem());
+        this(Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link ConcurrentGaugeImpl}.
+     *
+     * @param clock the clock used to decide when a new minute starts, which can be {@link Clock#coarseClock()}
+     */
+    public ConcurrentGaugeImpl(Clock clock) {
+        this.clock = clock;
+        count = new PaddedAtomicLong(0);
+        minute = new AtomicReference<>(new Minute(getCurrentMinute(), 0, 0, 0));
     }
 
     @Override
     public void inc() {
-        maybeStartNewMinute();
-        synchronized (this) {
-            long newCount = count.incrementAndGet();
-            if (newCount > max_thisMinute.get()) {
-                max_thisMinute.set(newCount);
-            }
-        }
+        long newCount = count.incrementAndGet();
+        currentMinute().max.accumulateAndGet(newCount, Math::max);
     }
 
     @Override
     public void dec() {
-        maybeStartNewMinute();
-        synchronized (this) {
-            long newCount = count.decrementAndGet();
-            if (newCount < min_thisMinute.get()) {
-                min_thisMinute.set(newCount);
-            }
-        }
+        long newCount = count.decrementAndGet();
+        currentMinute().min.accumulateAndGet(newCount, Math::min);
     }
 
     @Override
     public long getCount() {
-        maybeStartNewMinute();
         return count.get();
     }
 
     @Override
     public long getMax() {
-        maybeStartNewMinute();
-        return max_previousMinute.get();
+        return currentMinute().previousMax;
     }
 
     @Override
     public long getMin() {
-        maybeStartNewMinute();
-        return min_previousMinute.get();
+        return currentMinute().previousMin;
     }
 
     /*
-     * If a new minute has started, move the data for 'this' minute to 'previous' minute and start
-     * collecting new data for the 'this' minute
+     * If a new minute has started, replace the current minute with a new one that carries the extremes of the current
+     * minute as 'previous' minute, and starts collecting new extremes from the current count.
+     *
+     * The count is always updated before the current minute is looked up. An update racing with the replacement may
+     * therefore be missing from the extremes of the replaced minute, but never from the new minute, which starts from
+     * a count that already includes it.
      */
-    private void maybeStartNewMinute() {
-        long newMinute = getCurrentMinuteFromSystem();
-        if (newMinute > thisMinute.get()) {
-            synchronized (this) {
-                if (newMinute > thisMinute.get()) {
-                    thisMinute.set(newMinute);
-                    max_previousMinute.set(max_thisMinute.get());
-                    min_previousMinute.set(min_thisMinute.get());
-                    max_thisMinute.set(count.get());
-                    min_thisMinute.set(count.get());
-                }
+    private Minute currentMinute() {
+        long newMinute = getCurrentMinute();
+        Minute current = minute.get();
+        while (newMinute > current.minute) {
+            long currentCount = count.get();
+            Minute next = new Minute(newMinute, current.max.get(), current.min.get(), currentCount);
+            if (minute.compareAndSet(current, next)) {
+                return next;
             }
+            current = minute.get();
         }
+        return current;
+    }
+
+    // Get the current time in minutes, truncating. This number will increase by 1 every complete minute.
+    private long getCurrentMinute() {
+        return clock.getTime() / 60000;
     }
 
-    // Get the current system time in minutes, truncating. This number will increase by 1 every complete minute.
-    private long getCurrentMinuteFromSystem() {
-        return System.currentTimeMillis() / 60000;
+    private static final class Minute {
+        // timestamp rounded down to the whole minute
+        private final long minute;
+
+        // maximum count achieved in previous minute
+        private final long previousMax;
+        // minimum count achieved in previous minute
+        private final long previousMin;
+
+        // maximum count achieved in this minute
+        private final AtomicLong max;
+        // minimum count achieved in this minute
+        private final AtomicLong min;
+
+        private Minute(long minute, long previousMax, long previousMin, long count) {
+            this.minute = minute;
+            this.previousMax = previousMax;
+            this.previousMin = previousMin;
+            this.max = new PaddedAtomicLong(count);
+            this.min = new PaddedAtomicLong(count);
+        }
     }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A reservoir that counts the recorded values in a DDSketch, which guarantees that every quantile is within a
+ * relative error of the real value. The sketch covers all positive {@code long}s in a fixed number of logarithmic
+ * buckets, so the memory used by the reservoir is bounded (about 2200 buckets for a relative accuracy of 1%) and
+ * recording a value is a single atomic increment.
+ * <p>
+ * The snapshots of this reservoir are {@link DDSketchSnapshot}s, which can be merged with each other and converted
+ * to a compact binary form.
+ * <p>
+ * Negative values are counted as zero.
+ *
+ * @see <a href="https://arxiv.org/abs/1908.10693">Masson et al. DDSketch: A Fast and Fully-Mergeable Quantile
+ *      Sketch with Relative-Error Guarantees. PVLDB 12(12) (2019)</a>
+ */
+public class DDSketchReservoir implements Reservoir {
+    private static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    // counts[0] counts the values lower than 1, counts[i + 1] the values in the bucket with index i
+    private final AtomicLongArray counts;
+
+    /**
+     * Creates a new {@link DDSketchReservoir} with a relative accuracy of 1%.
+     */
+    public DDSketchReservoir() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Creates a new {@link DDSketchReservoir}.
+     *
+     * @param relativeAccuracy the relative accuracy of the quantiles, between 0 and 1 exclusive
+     */
+    public DDSketchReservoir(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1, was " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log(gamma(relativeAccuracy));
+        this.counts = new AtomicLongArray(Math.toIntExact(maxIndex(relativeAccuracy) + 2));
+    }
+
+    static double gamma(double relativeAccuracy) {
+        return (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    }
+
+    // the index of the bucket of Long.MAX_VALUE, the indices of all buckets are between 0 and this one
+    static long maxIndex(double relativeAccuracy) {
+        return (long) Math.ceil(Math.log(Long.MAX_VALUE) / Math.log(gamma(relativeAccuracy)));
+    }
+
+    // the value within relativeAccuracy of all values in the bucket (gamma^(index - 1), gamma^index]
+    static long representativeValue(double gamma, int index) {
+        return Math.round(2 * Math.pow(gamma, index) / (gamma + 1));
+    }
+
+    private int indexOf(long value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    @Override
+    public int size() {
+        long sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            sum += counts.get(i);
+        }
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void update(long value) {
+        counts.incrementAndGet(value < 1 ? 0 : indexOf(value) + 1);
+    }
+
+    @Override
+    public DDSketchSnapshot getSnapshot() {
+        final long[] copy = new long[counts.length() - 1];
+        int min = copy.length;
+        int max = -1;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i + 1);
+            if (copy[i] > 0) {
+                min = Math.min(min, i);
+                max = i;
+            }
+        }
+        final long zeroCount = counts.get(0);
+        if (max < 0) {
+            return new DDSketchSnapshot(relativeAccuracy, zeroCount, 0, new long[0]);
+        }
+        return new DDSketchSnapshot(relativeAccuracy, zeroCount, min, Arrays.copyOfRange(copy, min, max + 1));
+    }
+}
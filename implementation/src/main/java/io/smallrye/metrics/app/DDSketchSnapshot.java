@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A snapshot of a {@link DDSketchReservoir}. Besides being a {@link org.eclipse.microprofile.metrics.Snapshot},
+ * it is a DDSketch that can be merged with sketches of other reservoirs with the same relative accuracy, and be
+ * converted to and from a compact binary form. Quantiles of merged sketches have the same relative accuracy as
+ * those of a single sketch, so sketches from several processes can be combined into fleet-wide quantiles. These
+ * are not exact, but within the relative accuracy of the real quantiles.
+ * <p>
+ * The binary form consists of a format version byte, the relative accuracy as a double, the number of values
+ * counted as zero, the index of the lowest bucket, the number of buckets, and the count of every bucket. All but
+ * the first two are written as variable-length integers. Values lower than 1 are counted as zero, so the bucket
+ * indices are never negative.
+ *
+ * @see <a href="https://arxiv.org/abs/1908.10693">Masson et al. DDSketch: A Fast and Fully-Mergeable Quantile
+ *      Sketch with Relative-Error Guarantees. PVLDB 12(12) (2019)</a>
+ */
+public class DDSketchSnapshot extends BucketSnapshot {
+    private static final byte FORMAT_VERSION = 1;
+
+    private final double relativeAccuracy;
+    private final long zeroCount;
+    private final int minIndex;
+    // counts[i] is the count of the bucket with index minIndex + i
+    private final long[] counts;
+
+    /**
+     * Creates a new sketch.
+     *
+     * @param relativeAccuracy the relative accuracy of the sketch
+     * @param zeroCount the number of values counted as zero
+     * @param minIndex the index of the bucket counted in {@code counts[0]}
+     * @param counts the counts of consecutive buckets, starting at {@code minIndex}
+     */
+    DDSketchSnapshot(double relativeAccuracy, long zeroCount, int minIndex, long[] counts) {
+        super(representativeValues(relativeAccuracy, checkIndices(relativeAccuracy, minIndex, counts.length),
+                counts.length), withZeroCount(zeroCount, counts));
+        this.relativeAccuracy = relativeAccuracy;
+        this.zeroCount = zeroCount;
+        this.minIndex = minIndex;
+        this.counts = counts;
+    }
+
+    /*
+     * Checks that the buckets are within the buckets of a reservoir with the given accuracy, so that merging the
+     * sketch cannot allocate more than those.
+     */
+    private static int checkIndices(double relativeAccuracy, long minIndex, long buckets) {
+        final long maxIndex = DDSketchReservoir.maxIndex(relativeAccuracy);
+        if (minIndex < 0 || minIndex > maxIndex || buckets > maxIndex - minIndex + 1) {
+            throw new IllegalArgumentException("Buckets " + minIndex + " to " + (minIndex + buckets - 1)
+                    + " are out of the range of buckets 0 to " + maxIndex + " for relative accuracy "
+                    + relativeAccuracy);
+        }
+        return (int) minIndex;
+    }
+
+    private static long[] representativeValues(double relativeAccuracy, int minIndex, int buckets) {
+        final double gamma = DDSketchReservoir.gamma(relativeAccuracy);
+        final long[] values = new long[buckets + 1];
+        for (int i = 0; i < buckets; i++) {
+            values[i + 1] = DDSketchReservoir.representativeValue(gamma, minIndex + i);
+        }
+        return values;
+    }
+
+    private static long[] withZeroCount(long zeroCount, long[] counts) {
+        final long[] result = new long[counts.length + 1];
+        result[0] = zeroCount;
+        System.arraycopy(counts, 0, result, 1, counts.length);
+        return result;
+    }
+
+    /**
+     * Returns the relative accuracy of the quantiles of this sketch.
+     *
+     * @return the relative accuracy
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Merges this sketch with another one.
+     *
+     * @param other the sketch to merge with, which must have the same relative accuracy
+     * @return a new sketch counting the values of both sketches
+     */
+    public DDSketchSnapshot merge(DDSketchSnapshot other) {
+        if (Double.compare(relativeAccuracy, other.relativeAccuracy) != 0) {
+            throw new IllegalArgumentException("Cannot merge a sketch with relative accuracy " + relativeAccuracy
+                    + " with a sketch with relative accuracy " + other.relativeAccuracy);
+        }
+        if (other.counts.length == 0) {
+            return new DDSketchSnapshot(relativeAccuracy, zeroCount + other.zeroCount, minIndex, counts);
+        }
+        if (counts.length == 0) {
+            return new DDSketchSnapshot(relativeAccuracy, zeroCount + other.zeroCount, other.minIndex, other.counts);
+        }
+        final int mergedMinIndex = Math.min(minIndex, other.minIndex);
+        final int mergedMaxIndex = Math.max(minIndex + counts.length, other.minIndex + other.counts.length) - 1;
+        final long[] merged = new long[mergedMaxIndex - mergedMinIndex + 1];
+        for (int i = 0; i < counts.length; i++) {
+            merged[minIndex - mergedMinIndex + i] += counts[i];
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            merged[other.minIndex - mergedMinIndex + i] += other.counts[i];
+        }
+        return new DDSketchSnapshot(relativeAccuracy, zeroCount + other.zeroCount, mergedMinIndex, merged);
+    }
+
+    /**
+     * Returns the binary form of this sketch.
+     *
+     * @return the binary form of this sketch
+     * @see #fromByteArray(byte[])
+     */
+    public byte[] toByteArray() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + counts.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeDouble(relativeAccuracy);
+            writeVarLong(out, zeroCount);
+            writeVarLong(out, minIndex);
+            writeVarLong(out, counts.length);
+            for (long count : counts) {
+                writeVarLong(out, count);
+            }
+        } catch (IOException e) {
+            // cannot happen when writing to a byte array
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a sketch from its binary form.
+     *
+     * @param bytes the binary form of a sketch
+     * @return the sketch
+     * @throws IllegalArgumentException if {@code bytes} is not the binary form of a sketch
+     * @see #toByteArray()
+     */
+    public static DDSketchSnapshot fromByteArray(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            final byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch format version " + version);
+            }
+            final double relativeAccuracy = in.readDouble();
+            if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+                throw new IllegalArgumentException("Invalid relative accuracy " + relativeAccuracy);
+            }
+            final long zeroCount = readVarLong(in);
+            if (zeroCount < 0) {
+                throw new IllegalArgumentException("Negative count " + zeroCount);
+            }
+            final long minIndex = readVarLong(in);
+            final long buckets = readVarLong(in);
+            if (buckets < 0 || buckets > in.available()) {
+                throw new IllegalArgumentException("Truncated sketch, expected " + buckets + " buckets");
+            }
+            // before allocating the counts
+            checkIndices(relativeAccuracy, minIndex, buckets);
+            final long[] counts = new long[(int) buckets];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = readVarLong(in);
+                if (counts[i] < 0) {
+                    throw new IllegalArgumentException("Negative count " + counts[i]);
+                }
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("Unexpected data after the end of the sketch");
+            }
+            return new DDSketchSnapshot(relativeAccuracy, zeroCount, (int) minIndex, counts);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated sketch", e);
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length integer");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DDSketchSnapshot that = (DDSketchSnapshot) o;
+        return Double.compare(that.relativeAccuracy, relativeAccuracy) == 0 &&
+                zeroCount == that.zeroCount &&
+                minIndex == that.minIndex &&
+                Arrays.equals(counts, that.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Double.hashCode(relativeAccuracy);
+        result = 31 * result + Long.hashCode(zeroCount);
+        result = 31 * result + minIndex;
+        result = 31 * result + Arrays.hashCode(counts);
+        return result;
+    }
+}
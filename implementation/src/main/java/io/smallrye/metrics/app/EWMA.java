@@ -51,9 +51,9 @@ public class EWMA {
     private static final int ONE_MINUTE = 1;
     private static final int FIVE_MINUTES = 5;
     private static final int FIFTEEN_MINUTES = 15;
-    private static final double M1_ALPHA = 1 - exp(-INTERVAL / SECONDS_PER_MINUTE / ONE_MINUTE);
-    private static final double M5_ALPHA = 1 - exp(-INTERVAL / SECONDS_PER_MINUTE / FIVE_MINUTES);
-    private static final double M15_ALPHA = 1 - exp(-INTERVAL / SECONDS_PER_MINUTE / FIFTEEN_MINUTES);
+    static final double M1_ALPHA = 1 - exp(-INTERVAL / SECONDS_PER_MINUTE / ONE_MINUTE);
+    static final double M5_ALPHA = 1 - exp(-INTERVAL / SECONDS_PER_MINUTE / FIVE_MINUTES);
+    static final double M15_ALPHA = 1 - exp(-INTERVAL / SECONDS_PER_MINUTE / FIFTEEN_MINUTES);
 
     private volatile boolean initialized = false;
     private volatile double rate = 0.0;
@@ -116,17 +116,40 @@ public class EWMA {
      * Mark the passage of time and decay the current rate accordingly.
      */
     public void tick() {
-        final long count = uncounted.sumThenReset();
-        final double instantRate = count / interval;
+        tick(1);
+    }
+
+    /**
+     * Mark the passage of several intervals at once. This is the same as calling {@link #tick()} {@code ticks} times,
+     * but the decay of the intervals without new values is computed in one step.
+     *
+     * @param ticks the number of intervals that have passed
+     */
+    public void tick(long ticks) {
+        if (ticks <= 0) {
+            return;
+        }
+        final double instantRate = uncounted.sumThenReset() / interval;
         if (initialized) {
-            final double oldRate = this.rate;
-            rate = oldRate + (alpha * (instantRate - oldRate));
+            rate = decay(rate, alpha, instantRate, ticks);
         } else {
-            rate = instantRate;
+            rate = decay(instantRate, alpha, 0, ticks - 1);
             initialized = true;
         }
     }
 
+    /*
+     * Returns the rate after the given number of intervals, the first of which had the given instant rate. Every
+     * further interval has an instant rate of zero, and multiplies the rate by (1 - alpha).
+     */
+    static double decay(double rate, double alpha, double instantRate, long ticks) {
+        if (ticks <= 0) {
+            return rate;
+        }
+        final double afterFirstTick = rate + (alpha * (instantRate - rate));
+        return ticks == 1 ? afterFirstTick : afterFirstTick * Math.pow(1 - alpha, ticks - 1);
+    }
+
     /**
      * Returns the rate in the given units of time.
      *
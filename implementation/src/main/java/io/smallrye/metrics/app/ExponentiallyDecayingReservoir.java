@@ -32,14 +32,16 @@
 package io.smallrye.metrics.app;
 
 import static java.lang.Math.exp;
-import static java.lang.Math.min;
+import static java.lang.Math.log;
 
 import java.util.ArrayList;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.microprofile.metrics.Snapshot;
 
@@ -47,6 +49,16 @@ import org.eclipse.microprofile.metrics.Snapshot;
  * An exponentially-decaying random reservoir of {@code long}s. Uses Cormode et al's
  * forward-decaying priority reservoir sampling method to produce a statistically representative
  * sampling reservoir, exponentially biased towards newer entries.
+ * <p>
+ * Samples are kept in a binary min-heap ordered by priority, stored in primitive arrays. Once the reservoir is full,
+ * an update whose priority is not higher than the lowest priority in the heap (which is the case for most updates)
+ * is rejected without locking and without allocating anything. An update that is accepted does not wait for the lock
+ * either: if another thread is updating the heap or taking a snapshot, the sample is queued and inserted by whichever
+ * thread holds the lock before it releases it. Only snapshots wait for the lock.
+ * <p>
+ * Priorities are kept as logarithms relative to a fixed landmark and sample weights are only computed when a snapshot
+ * is taken, relative to the current time. Unlike the usual implementation, the reservoir therefore never has to be
+ * rescaled to a new landmark, so there is no periodic pass over all samples that would stall writers.
  *
  * @see <a href="http://dimacs.rutgers.edu/~graham/pubs/papers/fwddecay.pdf">
  *      Cormode et al. Forward Decay: A Practical Time Decay Model for Streaming Systems. ICDE '09:
@@ -55,15 +67,31 @@ import org.eclipse.microprofile.metrics.Snapshot;
 public class ExponentiallyDecayingReservoir implements Reservoir {
     private static final int DEFAULT_SIZE = 1028;
     private static final double DEFAULT_ALPHA = 0.015;
-    private static final long RESCALE_THRESHOLD = TimeUnit.HOURS.toNanos(1);
+    private static final int INITIAL_CAPACITY = 16;
+
+    /*
+     * Min-heap of the samples ordered by priority, the three arrays are always permuted together. The arrays start
+     * small and grow up to size as samples are added, so reservoirs of rarely updated metrics stay small.
+     * Only accessed while holding the lock.
+     */
+    private double[] priorities;
+    private long[] values;
+    private long[] timestamps;
+    // number of samples in the heap
+    private volatile int filled;
+    /*
+     * Lowest priority in the heap if the heap is full, otherwise negative infinity. Updates with a priority not higher
+     * than this are rejected without locking.
+     */
+    private volatile double minPriority = Double.NEGATIVE_INFINITY;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // accepted samples of updates that found the lock held, inserted by the thread holding it
+    private final Queue<Sample> pending = new ConcurrentLinkedQueue<>();
 
-    private final ConcurrentSkipListMap<Double, WeightedSnapshot.WeightedSample> values;
-    private final ReentrantReadWriteLock lock;
     private final double alpha;
     private final int size;
-    private final AtomicLong count;
-    private volatile long startTime;
-    private final AtomicLong nextScaleTime;
+    private final long landmark;
     private final Clock clock;
 
     /**
@@ -92,22 +120,22 @@ public class ExponentiallyDecayingReservoir implements Reservoir {
      * @param size the number of samples to keep in the sampling reservoir
      * @param alpha the exponential decay factor; the higher this is, the more biased the reservoir
      *        will be towards newer values
-     * @param clock the clock used to timestamp samples and track rescaling
+     * @param clock the clock used to timestamp samples
      */
     public ExponentiallyDecayingReservoir(int size, double alpha, Clock clock) {
-        this.values = new ConcurrentSkipListMap<>();
-        this.lock = new ReentrantReadWriteLock();
+        final int capacity = Math.min(size, INITIAL_CAPACITY);
+        this.priorities = new double[capacity];
+        this.values = new long[capacity];
+        this.timestamps = new long[capacity];
         this.alpha = alpha;
         this.size = size;
         this.clock = clock;
-        this.count = new AtomicLong(0);
-        this.startTime = currentTimeInSeconds();
-        this.nextScaleTime = new AtomicLong(clock.getTick() + RESCALE_THRESHOLD);
+        this.landmark = currentTimeInSeconds();
     }
 
     @Override
     public int size() {
-        return (int) min(size, count.get());
+        return filled;
     }
 
     @Override
@@ -122,116 +150,170 @@ public class ExponentiallyDecayingReservoir implements Reservoir {
      * @param timestamp the epoch timestamp of {@code value} in seconds
      */
     public void update(long value, long timestamp) {
-        rescaleIfNeeded();
-        lockForRegularUsage();
-        try {
-            final double itemWeight = weight(timestamp - startTime);
-            final WeightedSnapshot.WeightedSample sample = new WeightedSnapshot.WeightedSample(value, itemWeight);
-            final double priority = itemWeight / ThreadLocalRandom.current().nextDouble();
-
-            final long newCount = count.incrementAndGet();
-            if (newCount <= size) {
-                values.put(priority, sample);
-            } else {
-                Double first = values.firstKey();
-                if (first < priority && values.putIfAbsent(priority, sample) == null) {
-                    // ensure we always remove an item
-                    while (values.remove(first) == null) {
-                        first = values.firstKey();
-                    }
-                }
+        final double priority = priority(timestamp, ThreadLocalRandom.current().nextDouble());
+        if (priority <= minPriority) {
+            return;
+        }
+        offer(value, timestamp, priority);
+    }
+
+    /*
+     * The priority of a sample is g(t - L) / u, where g is the exponential decay function, L the landmark and u
+     * a random number in (0, 1]. Its logarithm is used instead, which orders samples the same way but does not
+     * overflow no matter how far the sample is from the landmark.
+     */
+    private double priority(long timestamp, double random) {
+        return alpha * (timestamp - landmark) - log(random);
+    }
+
+    private void offer(long value, long timestamp, double priority) {
+        if (lock.tryLock()) {
+            try {
+                insert(value, timestamp, priority);
+                insertPending();
+            } finally {
+                lock.unlock();
             }
-        } finally {
-            unlockForRegularUsage();
+        } else {
+            pending.add(new Sample(value, timestamp, priority));
         }
+        drainPending();
     }
 
-    private void rescaleIfNeeded() {
-        final long now = clock.getTick();
-        final long next = nextScaleTime.get();
-        if (now >= next) {
-            rescale(now, next);
+    /*
+     * A sample may have been queued after the thread holding the lock inserted the pending ones, but then that thread
+     * either sees it here after releasing the lock, or the thread that queued it acquires the lock.
+     */
+    private void drainPending() {
+        while (!pending.isEmpty() && lock.tryLock()) {
+            try {
+                insertPending();
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
-    @Override
-    public Snapshot getSnapshot() {
-        rescaleIfNeeded();
-        lockForRegularUsage();
-        try {
-            return new WeightedSnapshot(values.values());
-        } finally {
-            unlockForRegularUsage();
+    private void insertPending() {
+        Sample sample;
+        while ((sample = pending.poll()) != null) {
+            insert(sample.value, sample.timestamp, sample.priority);
         }
     }
 
-    private long currentTimeInSeconds() {
-        return TimeUnit.MILLISECONDS.toSeconds(clock.getTime());
+    private void insert(long value, long timestamp, double priority) {
+        if (filled < size) {
+            if (filled == priorities.length) {
+                grow();
+            }
+            siftUp(filled, priority, value, timestamp);
+            filled++;
+            if (filled == size) {
+                minPriority = priorities[0];
+            }
+        } else if (priority > priorities[0]) {
+            // replace the sample with the lowest priority
+            siftDown(0, priority, value, timestamp);
+            minPriority = priorities[0];
+        }
     }
 
-    private double weight(long t) {
-        return exp(alpha * t);
+    private void grow() {
+        final int capacity = (int) Math.min(size, 2L * priorities.length);
+        priorities = Arrays.copyOf(priorities, capacity);
+        values = Arrays.copyOf(values, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
     }
 
-    /*
-     * "A common feature of the above techniques—indeed, the key technique that
-     * allows us to track the decayed weights efficiently—is that they maintain
-     * counts and other quantities based on g(ti − L), and only scale by g(t − L)
-     * at query time. But while g(ti −L)/g(t−L) is guaranteed to lie between zero
-     * and one, the intermediate values of g(ti − L) could become very large. For
-     * polynomial functions, these values should not grow too large, and should be
-     * effectively represented in practice by floating point values without loss of
-     * precision. For exponential functions, these values could grow quite large as
-     * new values of (ti − L) become large, and potentially exceed the capacity of
-     * common floating point types. However, since the values stored by the
-     * algorithms are linear combinations of g values (scaled sums), they can be
-     * rescaled relative to a new landmark. That is, by the analysis of exponential
-     * decay in Section III-A, the choice of L does not affect the final result. We
-     * can therefore multiply each value based on L by a factor of exp(−α(L′ − L)),
-     * and obtain the correct value as if we had instead computed relative to a new
-     * landmark L′ (and then use this new L′ at query time). This can be done with
-     * a linear pass over whatever data structure is being used."
-     */
-    private void rescale(long now, long next) {
-        lockForRescale();
-        try {
-            if (nextScaleTime.compareAndSet(next, now + RESCALE_THRESHOLD)) {
-                final long oldStartTime = startTime;
-                this.startTime = currentTimeInSeconds();
-                final double scalingFactor = exp(-alpha * (startTime - oldStartTime));
-                if (Double.compare(scalingFactor, 0) == 0) {
-                    values.clear();
-                } else {
-                    final ArrayList<Double> keys = new ArrayList<>(values.keySet());
-                    for (Double key : keys) {
-                        final WeightedSnapshot.WeightedSample sample = values.remove(key);
-                        final WeightedSnapshot.WeightedSample newSample = new WeightedSnapshot.WeightedSample(sample.value,
-                                sample.weight * scalingFactor);
-                        values.put(key * scalingFactor, newSample);
-                    }
-                }
-
-                // make sure the counter is in sync with the number of stored samples.
-                count.set(values.size());
+    // moves the hole at index i up until the new sample can be placed into it
+    private void siftUp(int i, double priority, long value, long timestamp) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
             }
-        } finally {
-            unlockForRescale();
+            move(parent, i);
+            i = parent;
         }
+        set(i, priority, value, timestamp);
     }
 
-    private void unlockForRescale() {
-        lock.writeLock().unlock();
+    // moves the hole at index i down until the new sample can be placed into it
+    private void siftDown(int i, double priority, long value, long timestamp) {
+        int half = filled >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < filled && priorities[right] < priorities[child]) {
+                child = right;
+            }
+            if (priority <= priorities[child]) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        set(i, priority, value, timestamp);
     }
 
-    private void lockForRescale() {
-        lock.writeLock().lock();
+    private void move(int from, int to) {
+        set(to, priorities[from], values[from], timestamps[from]);
     }
 
-    private void lockForRegularUsage() {
-        lock.readLock().lock();
+    private void set(int i, double priority, long value, long timestamp) {
+        priorities[i] = priority;
+        values[i] = value;
+        timestamps[i] = timestamp;
     }
 
-    private void unlockForRegularUsage() {
-        lock.readLock().unlock();
+    @Override
+    public Snapshot getSnapshot() {
+        final long[] sampleValues;
+        final long[] sampleTimestamps;
+        lock.lock();
+        try {
+            insertPending();
+            sampleValues = new long[filled];
+            sampleTimestamps = new long[filled];
+            System.arraycopy(values, 0, sampleValues, 0, filled);
+            System.arraycopy(timestamps, 0, sampleTimestamps, 0, filled);
+        } finally {
+            lock.unlock();
+        }
+        drainPending();
+
+        /*
+         * Weights are computed relative to the current time rather than to the landmark, which is possible because
+         * "by the analysis of exponential decay in Section III-A, the choice of L does not affect the final result".
+         * Using the current time keeps the weights from overflowing.
+         *
+         * Samples so old that their weight is zero are left out of the snapshot, they would be removed by the
+         * rescaling pass in the usual implementation too.
+         */
+        final long now = currentTimeInSeconds();
+        final List<WeightedSnapshot.WeightedSample> samples = new ArrayList<>(sampleValues.length);
+        for (int i = 0; i < sampleValues.length; i++) {
+            final double weight = exp(alpha * (sampleTimestamps[i] - now));
+            if (weight > 0) {
+                samples.add(new WeightedSnapshot.WeightedSample(sampleValues[i], weight));
+            }
+        }
+        return new WeightedSnapshot(samples);
+    }
+
+    private long currentTimeInSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(clock.getTime());
+    }
+
+    private static final class Sample {
+        final long value;
+        final long timestamp;
+        final double priority;
+
+        Sample(long value, long timestamp, double priority) {
+            this.value = value;
+            this.timestamp = timestamp;
+            this.priority = priority;
+        }
     }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A reservoir that counts the recorded values in buckets with fixed upper boundaries, and keeps the sum of all
+ * recorded values. Its snapshots are {@link FixedBucketSnapshot}s, which the OpenMetrics exporter exposes as
+ * OpenMetrics histograms, with cumulative {@code _bucket} counts that can be aggregated across instances.
+ * <p>
+ * Recording a value is a binary search for its bucket, and an increment of the bucket count and of the sum.
+ */
+public class FixedBucketReservoir implements Reservoir {
+    private final long[] boundaries;
+    // counts[i] counts the values in (boundaries[i - 1], boundaries[i]], the last one the values above all boundaries
+    private final LongAdder[] counts;
+    private final LongAdder sum;
+
+    /**
+     * Creates a new {@link FixedBucketReservoir}.
+     *
+     * @param boundaries the inclusive upper boundaries of the buckets, in strictly ascending order
+     */
+    public FixedBucketReservoir(long... boundaries) {
+        for (int i = 1; i < boundaries.length; i++) {
+            if (boundaries[i] <= boundaries[i - 1]) {
+                throw new IllegalArgumentException("Bucket boundaries must be in strictly ascending order, but got "
+                        + Arrays.toString(boundaries));
+            }
+        }
+        this.boundaries = Arrays.copyOf(boundaries, boundaries.length);
+        this.counts = new LongAdder[boundaries.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        this.sum = new LongAdder();
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (LongAdder count : counts) {
+            size += count.sum();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void update(long value) {
+        int bucket = Arrays.binarySearch(boundaries, value);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        counts[bucket].increment();
+        sum.add(value);
+    }
+
+    @Override
+    public FixedBucketSnapshot getSnapshot() {
+        final long[] snapshotCounts = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            snapshotCounts[i] = counts[i].sum();
+        }
+        return new FixedBucketSnapshot(boundaries, snapshotCounts, sum.sum());
+    }
+}
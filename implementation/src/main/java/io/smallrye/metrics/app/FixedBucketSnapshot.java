@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of a {@link FixedBucketReservoir}: the upper boundaries of the buckets, the cumulative number of values
+ * recorded up to each boundary, and the sum of all recorded values.
+ * <p>
+ * As a {@link org.eclipse.microprofile.metrics.Snapshot}, every bucket is represented by its upper boundary, and
+ * the values above the highest boundary by the highest boundary. Quantiles, minimum and maximum are therefore only
+ * as precise as the boundaries, while the mean is exact.
+ */
+public class FixedBucketSnapshot extends BucketSnapshot {
+
+    private final long[] boundaries;
+    private final long[] cumulativeCounts;
+    private final long count;
+    private final long sum;
+
+    FixedBucketSnapshot(long[] boundaries, long[] counts, long sum) {
+        super(representativeValues(boundaries), counts);
+        this.boundaries = boundaries;
+        this.cumulativeCounts = new long[boundaries.length];
+        long cumulative = 0;
+        for (int i = 0; i < boundaries.length; i++) {
+            cumulative += counts[i];
+            cumulativeCounts[i] = cumulative;
+        }
+        this.count = cumulative + counts[boundaries.length];
+        this.sum = sum;
+    }
+
+    private static long[] representativeValues(long[] boundaries) {
+        long[] values = Arrays.copyOf(boundaries, boundaries.length + 1);
+        values[boundaries.length] = boundaries.length == 0 ? 0 : boundaries[boundaries.length - 1];
+        return values;
+    }
+
+    /**
+     * Returns the inclusive upper boundaries of the buckets, not including the implicit {@code +Inf} bucket.
+     *
+     * @return the upper boundaries of the buckets, in ascending order
+     */
+    public long[] getBoundaries() {
+        return Arrays.copyOf(boundaries, boundaries.length);
+    }
+
+    /**
+     * Returns the number of values recorded up to and including each boundary.
+     *
+     * @return the cumulative counts, in the same order as {@link #getBoundaries()}
+     */
+    public long[] getCumulativeCounts() {
+        return Arrays.copyOf(cumulativeCounts, cumulativeCounts.length);
+    }
+
+    /**
+     * Returns the number of all recorded values, which is the count of the implicit {@code +Inf} bucket.
+     *
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return the sum of the recorded values
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the arithmetic mean of the recorded values.
+     *
+     * @return the arithmetic mean
+     */
+    @Override
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        return (double) sum / count;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A reservoir that creates the reservoir it delegates to when the first value is recorded. This keeps histograms and
+ * timers that are registered but never updated from holding on to the memory of their reservoirs, which matters for
+ * reservoirs with preallocated buckets and metrics with many tag combinations.
+ * <p>
+ * Until the first update, snapshots are taken once from a new reservoir that is discarded right away, so they are of
+ * the same type as the snapshots of the delegate. That empty snapshot is reused until the first update.
+ */
+public class LazyReservoir implements Reservoir {
+    private final Supplier<? extends Reservoir> supplier;
+    private volatile Reservoir delegate;
+    private volatile Snapshot emptySnapshot;
+
+    /**
+     * Creates a new {@link LazyReservoir}.
+     *
+     * @param supplier creates the reservoir on the first update, and the empty reservoirs for the snapshots before
+     */
+    public LazyReservoir(Supplier<? extends Reservoir> supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public int size() {
+        Reservoir reservoir = delegate;
+        return reservoir == null ? 0 : reservoir.size();
+    }
+
+    @Override
+    public void update(long value) {
+        Reservoir reservoir = delegate;
+        if (reservoir == null) {
+            reservoir = create();
+        }
+        reservoir.update(value);
+    }
+
+    private synchronized Reservoir create() {
+        if (delegate == null) {
+            delegate = supplier.get();
+            emptySnapshot = null;
+        }
+        return delegate;
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        Reservoir reservoir = delegate;
+        if (reservoir != null) {
+            return reservoir.getSnapshot();
+        }
+        Snapshot snapshot = emptySnapshot;
+        if (snapshot == null) {
+            // racing readers may each take one, which is harmless because they are all empty
+            snapshot = supplier.get().getSnapshot();
+            emptySnapshot = snapshot;
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A reservoir that counts every recorded value in one of a fixed set of log-linear buckets, using the same bucket
+ * layout as HdrHistogram. Values are tracked with a configurable number of significant decimal digits over a
+ * configurable range, so the memory used by the reservoir is bounded and independent of the number of recorded
+ * values. The counts of a bucket are only allocated when the first value falls into it, so the memory used is
+ * proportional to the range of the recorded values rather than to the trackable range.
+ * <p>
+ * Unlike a sampling reservoir, no recorded value is ever dropped, so high quantiles are as accurate as the
+ * configured precision. The minimum and maximum are tracked exactly, and quantiles are never reported outside of
+ * them.
+ * <p>
+ * Negative values are recorded as zero and values higher than the highest trackable value are recorded as the
+ * highest trackable value. By default, values up to one hour in nanoseconds are tracked.
+ *
+ * @see <a href="http://hdrhistogram.org/">HdrHistogram</a>
+ */
+public class LogLinearReservoir implements Reservoir {
+    private static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+    private static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+    /*
+     * The buckets are split into sub-buckets of equal width. Values below subBucketCount are counted exactly, and
+     * every following bucket covers twice the range of the previous one with sub-buckets twice as wide. Only the
+     * upper half of the sub-buckets of those buckets is used, since the lower half overlaps with the previous bucket.
+     * The counts are indexed as in HdrHistogram, and split into rows of subBucketHalfCount counts, which are
+     * allocated on first use.
+     */
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final long highestTrackableValue;
+
+    private final AtomicReferenceArray<AtomicLongArray> rows;
+
+    // the exact extremes of the recorded values, updated before the values are counted
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a new {@link LogLinearReservoir} which tracks values from 0 up to one hour in nanoseconds with 2
+     * significant decimal digits.
+     */
+    public LogLinearReservoir() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * Creates a new {@link LogLinearReservoir}.
+     *
+     * @param highestTrackableValue the highest value to be tracked, at least 2
+     * @param significantDigits the number of significant decimal digits to which values are tracked, between 0
+     *        and 5
+     */
+    public LogLinearReservoir(long highestTrackableValue, int significantDigits) {
+        if (highestTrackableValue < 2) {
+            throw new IllegalArgumentException("highestTrackableValue must be at least 2, was " + highestTrackableValue);
+        }
+        if (significantDigits < 0 || significantDigits > 5) {
+            throw new IllegalArgumentException("significantDigits must be between 0 and 5, was " + significantDigits);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+
+        long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+        this.subBucketHalfCountMagnitude = Math.max(subBucketCountMagnitude, 1) - 1;
+        int subBucketCount = 1 << (subBucketHalfCountMagnitude + 1);
+        this.subBucketHalfCount = subBucketCount / 2;
+        this.subBucketMask = subBucketCount - 1;
+        this.leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+        int bucketCount = bucketsNeededToCoverValue(highestTrackableValue, subBucketCount);
+        this.rows = new AtomicReferenceArray<>(bucketCount + 1);
+    }
+
+    private static int bucketsNeededToCoverValue(long value, int subBucketCount) {
+        long smallestUntrackableValue = subBucketCount;
+        int bucketsNeeded = 1;
+        while (smallestUntrackableValue <= value) {
+            if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+                return bucketsNeeded + 1;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketsNeeded++;
+        }
+        return bucketsNeeded;
+    }
+
+    @Override
+    public int size() {
+        long sum = 0;
+        for (int row = 0; row < rows.length(); row++) {
+            AtomicLongArray counts = rows.get(row);
+            if (counts != null) {
+                for (int i = 0; i < counts.length(); i++) {
+                    sum += counts.get(i);
+                }
+            }
+        }
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void update(long value) {
+        long clamped = Math.min(Math.max(value, 0), highestTrackableValue);
+        updateMin(clamped);
+        updateMax(clamped);
+        int index = indexOf(clamped);
+        int row = index >>> subBucketHalfCountMagnitude;
+        AtomicLongArray counts = rows.get(row);
+        if (counts == null) {
+            rows.compareAndSet(row, null, new AtomicLongArray(subBucketHalfCount));
+            counts = rows.get(row);
+        }
+        counts.incrementAndGet(index & (subBucketHalfCount - 1));
+    }
+
+    private void updateMin(long value) {
+        long current = min.get();
+        while (value < current && !min.compareAndSet(current, value)) {
+            current = min.get();
+        }
+    }
+
+    private void updateMax(long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        // the rows are read once, a row allocated while the snapshot is taken is either in it completely or not at all
+        AtomicLongArray[] allocatedRows = new AtomicLongArray[rows.length()];
+        int allocated = 0;
+        for (int row = 0; row < allocatedRows.length; row++) {
+            allocatedRows[row] = rows.get(row);
+            if (allocatedRows[row] != null) {
+                allocated++;
+            }
+        }
+        long[] values = new long[allocated * subBucketHalfCount];
+        long[] snapshotCounts = new long[values.length];
+        int n = 0;
+        for (int row = 0; row < allocatedRows.length; row++) {
+            AtomicLongArray counts = allocatedRows[row];
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < counts.length(); i++) {
+                long count = counts.get(i);
+                if (count > 0) {
+                    values[n] = representativeValueAt((row << subBucketHalfCountMagnitude) + i);
+                    snapshotCounts[n] = count;
+                    n++;
+                }
+            }
+        }
+        // read after the counts, so that they include every counted value
+        return new LogLinearSnapshot(Arrays.copyOf(values, n), Arrays.copyOf(snapshotCounts, n), min.get(), max.get());
+    }
+
+    int indexOf(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        // subBucketIndex is in the upper half of the sub-buckets except for the first bucket
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + subBucketIndex - subBucketHalfCount;
+    }
+
+    // the value in the middle of the range of values counted at the given index
+    long representativeValueAt(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        long lowestValue = (long) subBucketIndex << bucketIndex;
+        return lowestValue + ((1L << bucketIndex) >> 1);
+    }
+
+    /*
+     * Reports the exact minimum and maximum instead of the values of the lowest and highest bucket, and keeps the
+     * quantiles between them, since the value of a bucket can be outside of the recorded values.
+     */
+    private static class LogLinearSnapshot extends BucketSnapshot {
+        private final long min;
+        private final long max;
+
+        LogLinearSnapshot(long[] values, long[] counts, long min, long max) {
+            super(values, counts);
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            double value = super.getValue(quantile);
+            return size() == 0 ? value : Math.min(Math.max(value, min), max);
+        }
+
+        @Override
+        public long getMax() {
+            return size() == 0 ? 0 : max;
+        }
+
+        @Override
+        public long getMin() {
+            return size() == 0 ? 0 : min;
+        }
+    }
+}
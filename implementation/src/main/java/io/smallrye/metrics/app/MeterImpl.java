@@ -32,7 +32,7 @@
 package io.smallrye.metrics.app;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.microprofile.metrics.Meter;
@@ -46,14 +46,30 @@ import org.eclipse.microprofile.metrics.Meter;
 public class MeterImpl implements Meter {
     private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
 
-    private final EWMA m1Rate = EWMA.oneMinuteEWMA();
-    private final EWMA m5Rate = EWMA.fiveMinuteEWMA();
-    private final EWMA m15Rate = EWMA.fifteenMinuteEWMA();
+    private static final AtomicLongFieldUpdater<MeterImpl> LAST_TICK = AtomicLongFieldUpdater
+            .newUpdater(MeterImpl.class, "lastTick");
+    private static final AtomicLongFieldUpdater<MeterImpl> LAST_TICK_COUNT = AtomicLongFieldUpdater
+            .newUpdater(MeterImpl.class, "lastTickCount");
 
+    /*
+     * The state is kept in primitive fields rather than in EWMA and AtomicLong objects, so that a meter is two
+     * objects (itself and its count) no matter how many moving averages it tracks. The moving averages are in events
+     * per nanosecond and are only written by the thread that wins the compare-and-set of lastTick.
+     */
+    private volatile double m1Rate;
+    private volatile double m5Rate;
+    private volatile double m15Rate;
+    private volatile boolean ratesInitialized;
+
+    // the only counter updated by mark(), the moving averages get the difference since the previous tick
     private final LongAdder count = new LongAdder();
     private final long startTime;
-    private final AtomicLong lastTick;
+    private volatile long lastTick;
+    // the count at the last tick
+    private volatile long lastTickCount;
     private final Clock clock;
+    // whether a MeterTicker ticks this meter, so that mark() doesn't have to
+    private final boolean tickedInBackground;
 
     /**
      * Creates a new {@link MeterImpl}.
@@ -65,12 +81,26 @@ public class MeterImpl implements Meter {
     /**
      * Creates a new {@link MeterImpl}.
      *
-     * @param clock the clock to use for the meter ticks
+     * @param clock the clock to use for the meter ticks, which can be {@link Clock#coarseClock()}
      */
     public MeterImpl(Clock clock) {
+        this(clock, null);
+    }
+
+    /**
+     * Creates a new {@link MeterImpl}.
+     *
+     * @param clock the clock to use for the meter ticks, which can be {@link Clock#coarseClock()}
+     * @param ticker the ticker that ticks this meter in the background, or null if marking the meter should tick it
+     */
+    public MeterImpl(Clock clock, MeterTicker ticker) {
         this.clock = clock;
         this.startTime = this.clock.getTick();
-        this.lastTick = new AtomicLong(startTime);
+        this.lastTick = startTime;
+        this.tickedInBackground = ticker != null;
+        if (ticker != null) {
+            ticker.register(this);
+        }
     }
 
     /**
@@ -86,25 +116,33 @@ public class MeterImpl implements Meter {
      * @param n the number of events
      */
     public void mark(long n) {
-        tickIfNecessary();
+        if (!tickedInBackground) {
+            tickIfNecessary();
+        }
         count.add(n);
-        m1Rate.update(n);
-        m5Rate.update(n);
-        m15Rate.update(n);
     }
 
-    private void tickIfNecessary() {
-        final long oldTick = lastTick.get();
+    void tickIfNecessary() {
+        final long oldTick = lastTick;
         final long newTick = clock.getTick();
         final long age = newTick - oldTick;
         if (age > TICK_INTERVAL) {
             final long newIntervalStartTick = newTick - age % TICK_INTERVAL;
-            if (lastTick.compareAndSet(oldTick, newIntervalStartTick)) {
+            if (LAST_TICK.compareAndSet(this, oldTick, newIntervalStartTick)) {
                 final long requiredTicks = age / TICK_INTERVAL;
-                for (long i = 0; i < requiredTicks; i++) {
-                    m1Rate.tick();
-                    m5Rate.tick();
-                    m15Rate.tick();
+                final long currentCount = count.sum();
+                // the max protects against a stalled earlier tick storing an older count after this one
+                final long previousCount = LAST_TICK_COUNT.getAndAccumulate(this, currentCount, Math::max);
+                final double instantRate = Math.max(0, currentCount - previousCount) / (double) TICK_INTERVAL;
+                if (ratesInitialized) {
+                    m1Rate = EWMA.decay(m1Rate, EWMA.M1_ALPHA, instantRate, requiredTicks);
+                    m5Rate = EWMA.decay(m5Rate, EWMA.M5_ALPHA, instantRate, requiredTicks);
+                    m15Rate = EWMA.decay(m15Rate, EWMA.M15_ALPHA, instantRate, requiredTicks);
+                } else {
+                    m1Rate = EWMA.decay(instantRate, EWMA.M1_ALPHA, 0, requiredTicks - 1);
+                    m5Rate = EWMA.decay(instantRate, EWMA.M5_ALPHA, 0, requiredTicks - 1);
+                    m15Rate = EWMA.decay(instantRate, EWMA.M15_ALPHA, 0, requiredTicks - 1);
+                    ratesInitialized = true;
                 }
             }
         }
@@ -118,28 +156,30 @@ public class MeterImpl implements Meter {
     @Override
     public double getFifteenMinuteRate() {
         tickIfNecessary();
-        return m15Rate.getRate(TimeUnit.SECONDS);
+        return m15Rate * TimeUnit.SECONDS.toNanos(1);
     }
 
     @Override
     public double getFiveMinuteRate() {
         tickIfNecessary();
-        return m5Rate.getRate(TimeUnit.SECONDS);
+        return m5Rate * TimeUnit.SECONDS.toNanos(1);
     }
 
     @Override
     public double getMeanRate() {
-        if (getCount() == 0) {
+        final long count = getCount();
+        // a coarse clock may not have advanced since the meter was created
+        final long elapsed = clock.getTick() - startTime;
+        if (count == 0 || elapsed <= 0) {
             return 0.0;
         } else {
-            final long elapsed = clock.getTick() - startTime;
-            return getCount() / (double) elapsed * TimeUnit.SECONDS.toNanos(1);
+            return count / (double) elapsed * TimeUnit.SECONDS.toNanos(1);
         }
     }
 
     @Override
     public double getOneMinuteRate() {
         tickIfNecessary();
-        return m1Rate.getRate(TimeUnit.SECONDS);
+        return m1Rate * TimeUnit.SECONDS.toNanos(1);
     }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Ticks the moving averages of {@link MeterImpl}s in the background, so that marking a meter doesn't have to check
+ * whether its moving averages are due for a tick. All meters created with the ticker are ticked every 5 seconds on
+ * a single daemon thread.
+ * <p>
+ * The ticker only keeps weak references to its meters, so meters that are removed from their registry are
+ * garbage collected as usual. The thread is started when the first meter is registered and stopped again when the
+ * ticker has no meters left, either because they were garbage collected or because they were
+ * {@link #unregister(Collection) unregistered} along with their registry.
+ */
+public class MeterTicker {
+
+    private static final Logger log = Logger.getLogger(MeterTicker.class);
+
+    private static final long TICK_INTERVAL = 5;
+
+    private final ConcurrentLinkedQueue<WeakReference<MeterImpl>> meters = new ConcurrentLinkedQueue<>();
+
+    // guarded by this, null while there are no meters to tick
+    private ScheduledExecutorService executor;
+
+    /**
+     * Returns the ticker shared by all registries. Its thread is started when the first meter is registered.
+     *
+     * @return the shared {@link MeterTicker} instance
+     */
+    public static MeterTicker sharedTicker() {
+        return SharedTickerHolder.DEFAULT;
+    }
+
+    MeterTicker() {
+    }
+
+    void register(MeterImpl meter) {
+        meters.add(new WeakReference<>(meter));
+        // after adding the meter, so that a concurrent stopIfIdle() either sees it or is followed by this start
+        startIfStopped();
+    }
+
+    /**
+     * Stops ticking the given meters, typically because their registry is discarded. The thread of the ticker is
+     * stopped if no other meters are left.
+     *
+     * @param removed the meters to stop ticking, compared by identity
+     */
+    public void unregister(Collection<MeterImpl> removed) {
+        meters.removeIf(reference -> {
+            MeterImpl meter = reference.get();
+            return meter == null || removed.contains(meter);
+        });
+        stopIfIdle();
+    }
+
+    /*
+     * Ticks all meters that are due for a tick, and forgets about the meters that were garbage collected.
+     */
+    void tick() {
+        Iterator<WeakReference<MeterImpl>> iterator = meters.iterator();
+        while (iterator.hasNext()) {
+            MeterImpl meter = iterator.next().get();
+            if (meter == null) {
+                iterator.remove();
+            } else {
+                meter.tickIfNecessary();
+            }
+        }
+        if (meters.isEmpty()) {
+            stopIfIdle();
+        }
+    }
+
+    synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    private synchronized void stopIfIdle() {
+        if (executor != null && meters.isEmpty()) {
+            // the meters catch up on the missed ticks when they are read, so no tick is lost by stopping
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private synchronized void startIfStopped() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "smallrye-metrics-meter-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                // an exception would cancel all further ticks
+                log.warn("Failed to tick meters", e);
+            }
+        }, TICK_INTERVAL, TICK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    private static class SharedTickerHolder {
+        private static final MeterTicker DEFAULT = new MeterTicker();
+    }
+}
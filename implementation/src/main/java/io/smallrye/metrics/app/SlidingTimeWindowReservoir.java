@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A reservoir that keeps the values recorded in a sliding window of time, with a resolution of one second.
+ * <p>
+ * The window is a ring buffer of per-second buckets, each of which holds up to {@code samplesPerSecond} values
+ * stored in primitive arrays. If more values than that are recorded within a second, a uniform sample of them is
+ * kept, and the samples are weighted in snapshots so that every second contributes in proportion to the number of
+ * values recorded in it. A bucket is only cleared when it is reused for a new second, so values that have left the
+ * window are evicted lazily and never by a separate pass.
+ * <p>
+ * The samples of a bucket are only allocated when the first value is recorded in it, so a reservoir that is rarely
+ * updated stays small. A busy reservoir uses two longs per sample, by default up to 64 samples per second for every
+ * second of the window, which can be changed with the {@code samples} parameter of {@link
+ * io.smallrye.metrics.ReservoirFactory}.
+ * <p>
+ * Recording a value does not lock: a bucket is claimed or reset for the current second by a compare-and-set of its
+ * state, which holds the second the bucket belongs to and the number of values recorded in it. Every sample is stamped
+ * with its second after it was stored, so that snapshots skip samples that were claimed but not yet written.
+ */
+public class SlidingTimeWindowReservoir implements Reservoir {
+    private static final int DEFAULT_SAMPLES_PER_SECOND = 64;
+
+    private static final int SECOND_SHIFT = 32;
+    private static final long COUNT_MASK = (1L << SECOND_SHIFT) - 1;
+
+    private final int buckets;
+    private final int samplesPerSecond;
+    // per bucket: the epoch second it belongs to in the upper 32 bits and the number of recorded values in the lower
+    private final AtomicLongArray states;
+    /*
+     * Per bucket, allocated on first use: the value of sample i at 2 * i, and at 2 * i + 1 the second it was
+     * recorded in plus one, or 0 if no sample was stored yet.
+     */
+    private final AtomicReferenceArray<AtomicLongArray> samples;
+    private final Clock clock;
+
+    /**
+     * Creates a new {@link SlidingTimeWindowReservoir} with the given window of time, keeping up to 64 values per
+     * second.
+     *
+     * @param window the window of time, rounded up to whole seconds
+     * @param windowUnit the unit of {@code window}
+     */
+    public SlidingTimeWindowReservoir(long window, TimeUnit windowUnit) {
+        this(window, windowUnit, DEFAULT_SAMPLES_PER_SECOND, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link SlidingTimeWindowReservoir} with the given window of time.
+     *
+     * @param window the window of time, rounded up to whole seconds
+     * @param windowUnit the unit of {@code window}
+     * @param samplesPerSecond the maximum number of values kept for every second
+     * @param clock the clock used to timestamp values
+     */
+    public SlidingTimeWindowReservoir(long window, TimeUnit windowUnit, int samplesPerSecond, Clock clock) {
+        long windowSeconds = (windowUnit.toMillis(window) + 999) / 1000;
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("window must be positive, was " + window + " " + windowUnit);
+        }
+        if (samplesPerSecond < 1 || samplesPerSecond > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("samplesPerSecond must be between 1 and " + Integer.MAX_VALUE / 2
+                    + ", was " + samplesPerSecond);
+        }
+        this.buckets = Math.toIntExact(windowSeconds);
+        this.samplesPerSecond = samplesPerSecond;
+        this.states = new AtomicLongArray(buckets);
+        this.samples = new AtomicReferenceArray<>(buckets);
+        this.clock = clock;
+    }
+
+    @Override
+    public int size() {
+        final long now = currentTimeInSeconds();
+        long size = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            final long state = states.get(bucket);
+            if (isInWindow(state >>> SECOND_SHIFT, now)) {
+                size += Math.min(state & COUNT_MASK, samplesPerSecond);
+            }
+        }
+        return (int) size;
+    }
+
+    @Override
+    public void update(long value) {
+        final long second = currentTimeInSeconds();
+        final int bucket = (int) (second % buckets);
+        while (true) {
+            final long state = states.get(bucket);
+            final long bucketSecond = state >>> SECOND_SHIFT;
+            final long count;
+            if (bucketSecond == second) {
+                count = state & COUNT_MASK;
+                if (count == COUNT_MASK) {
+                    // the counter is saturated, the value would almost certainly not be sampled anyway
+                    return;
+                }
+            } else if (bucketSecond < second) {
+                // the bucket still holds a second that has left the window, reuse it
+                count = 0;
+            } else {
+                // the window has moved on by a full turn since the caller read the clock
+                return;
+            }
+            if (states.compareAndSet(bucket, state, (second << SECOND_SHIFT) | (count + 1))) {
+                // reservoir sampling, the (count + 1)th value replaces a random sample with probability size / (count + 1)
+                final long slot = count < samplesPerSecond ? count : ThreadLocalRandom.current().nextLong(count + 1);
+                if (slot < samplesPerSecond) {
+                    final AtomicLongArray bucketSamples = samples(bucket);
+                    bucketSamples.lazySet(2 * (int) slot, value);
+                    bucketSamples.lazySet(2 * (int) slot + 1, second + 1);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        final long now = currentTimeInSeconds();
+        final List<WeightedSnapshot.WeightedSample> weighted = new ArrayList<>();
+        final long[] bucketValues = new long[samplesPerSecond];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            final long state = states.get(bucket);
+            final long second = state >>> SECOND_SHIFT;
+            final AtomicLongArray bucketSamples = samples.get(bucket);
+            if (!isInWindow(second, now) || bucketSamples == null) {
+                continue;
+            }
+            final long count = state & COUNT_MASK;
+            final int n = (int) Math.min(count, samplesPerSecond);
+            int written = 0;
+            for (int i = 0; i < n; i++) {
+                // the stamp is read first, so the value is the stamped one or a later one
+                if (bucketSamples.get(2 * i + 1) == second + 1) {
+                    bucketValues[written++] = bucketSamples.get(2 * i);
+                }
+            }
+            // the bucket was reused for a new second while it was being copied, so the copy may be mixed up
+            if (written == 0 || states.get(bucket) >>> SECOND_SHIFT != second) {
+                continue;
+            }
+            final double weight = (double) count / written;
+            for (int i = 0; i < written; i++) {
+                weighted.add(new WeightedSnapshot.WeightedSample(bucketValues[i], weight));
+            }
+        }
+        return new WeightedSnapshot(weighted);
+    }
+
+    private AtomicLongArray samples(int bucket) {
+        AtomicLongArray bucketSamples = samples.get(bucket);
+        if (bucketSamples == null) {
+            samples.compareAndSet(bucket, null, new AtomicLongArray(2 * samplesPerSecond));
+            bucketSamples = samples.get(bucket);
+        }
+        return bucketSamples;
+    }
+
+    private boolean isInWindow(long second, long now) {
+        return second > now - buckets && second <= now;
+    }
+
+    private long currentTimeInSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(clock.getTime());
+    }
+}
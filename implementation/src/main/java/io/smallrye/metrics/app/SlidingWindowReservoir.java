@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.smallrye.metrics.app;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A reservoir that keeps the last {@code size} recorded values in a ring buffer.
+ * <p>
+ * Recording a value claims the next slot of the ring buffer with a single atomic increment, so writers never block
+ * each other. Every slot is stamped with the index of the value stored in it, which is published after the value, so
+ * that snapshots skip slots that were claimed but not yet written.
+ */
+public class SlidingWindowReservoir implements Reservoir {
+    private final AtomicLongArray values;
+    // per slot: the index of the value stored in it plus one, or 0 if no value was stored yet
+    private final AtomicLongArray stamps;
+    private final AtomicLong count;
+
+    /**
+     * Creates a new {@link SlidingWindowReservoir} which stores the last {@code size} recorded values.
+     *
+     * @param size the number of values to keep
+     */
+    public SlidingWindowReservoir(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be at least 1, was " + size);
+        }
+        this.values = new AtomicLongArray(size);
+        this.stamps = new AtomicLongArray(size);
+        this.count = new AtomicLong();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(count.get(), values.length());
+    }
+
+    @Override
+    public void update(long value) {
+        final long index = count.getAndIncrement();
+        final int slot = (int) (index % values.length());
+        values.lazySet(slot, value);
+        stamps.lazySet(slot, index + 1);
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        final long claimed = count.get();
+        final long[] copy = new long[(int) Math.min(claimed, values.length())];
+        int n = 0;
+        for (int slot = 0; slot < copy.length; slot++) {
+            // the stamp is read first, so the value is the stamped one or a later one
+            final long stamp = stamps.get(slot);
+            // skip slots that were not written yet, and slots still holding a value of the previous turn
+            if (stamp > claimed - values.length()) {
+                copy[n++] = values.get(slot);
+            }
+        }
+        return new BucketSnapshot(n == copy.length ? copy : Arrays.copyOf(copy, n));
+    }
+}
@@ -43,8 +43,9 @@ import org.eclipse.microprofile.metrics.Timer;
  */
 public class TimerImpl implements Timer {
 
+    // the count of the meter is the count of the timer
     private final MeterImpl meter;
-    private final HistogramImpl histogram;
+    private final Reservoir reservoir;
     private final Clock clock;
 
     /**
@@ -71,9 +72,34 @@ public class TimerImpl implements Timer {
      * @param clock the {@link Clock} implementation the timer should use
      */
     public TimerImpl(Reservoir reservoir, Clock clock) {
-        this.meter = new MeterImpl(clock);
+        this(reservoir, clock, clock);
+    }
+
+    /**
+     * Creates a new {@link TimerImpl} that uses the given {@link Reservoir}, and separate {@link Clock}s for
+     * measuring durations and for the rates of the timer.
+     *
+     * @param reservoir the {@link Reservoir} implementation the timer should use
+     * @param clock the {@link Clock} implementation used to measure durations
+     * @param meterClock the {@link Clock} implementation used for the rates, which can be {@link Clock#coarseClock()}
+     */
+    public TimerImpl(Reservoir reservoir, Clock clock, Clock meterClock) {
+        this(reservoir, clock, meterClock, null);
+    }
+
+    /**
+     * Creates a new {@link TimerImpl} that uses the given {@link Reservoir}, separate {@link Clock}s for measuring
+     * durations and for the rates of the timer, and optionally a {@link MeterTicker} for its rates.
+     *
+     * @param reservoir the {@link Reservoir} implementation the timer should use
+     * @param clock the {@link Clock} implementation used to measure durations
+     * @param meterClock the {@link Clock} implementation used for the rates, which can be {@link Clock#coarseClock()}
+     * @param ticker the ticker that ticks the rates in the background, or null if recording a duration should tick them
+     */
+    public TimerImpl(Reservoir reservoir, Clock clock, Clock meterClock, MeterTicker ticker) {
+        this.meter = new MeterImpl(meterClock, ticker);
         this.clock = clock;
-        this.histogram = new HistogramImpl(reservoir);
+        this.reservoir = reservoir;
     }
 
     /**
@@ -131,7 +157,7 @@ public class TimerImpl implements Timer {
 
     @Override
     public long getCount() {
-        return histogram.getCount();
+        return meter.getCount();
     }
 
     @Override
@@ -156,12 +182,12 @@ public class TimerImpl implements Timer {
 
     @Override
     public Snapshot getSnapshot() {
-        return histogram.getSnapshot();
+        return reservoir.getSnapshot();
     }
 
     private void update(long duration) {
         if (duration >= 0) {
-            histogram.update(duration);
+            reservoir.update(duration);
             meter.mark();
         }
     }
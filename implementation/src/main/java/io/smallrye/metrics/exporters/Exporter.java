@@ -17,6 +17,9 @@
 
 package io.smallrye.metrics.exporters;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import org.eclipse.microprofile.metrics.MetricID;
 import org.eclipse.microprofile.metrics.MetricRegistry;
 
@@ -40,4 +43,39 @@ public interface Exporter {
      * Exports all metrics with the given name inside the given scope.
      */
     StringBuilder exportMetricsByName(MetricRegistry.Type scope, String name);
+
+    /**
+     * Writes the export of one scope to the given writer. Exporters that can write incrementally override this, so
+     * that the export doesn't have to be held in memory as a whole.
+     */
+    default void exportOneScope(MetricRegistry.Type scope, Writer writer) throws IOException {
+        writer.append(exportOneScope(scope));
+    }
+
+    /**
+     * Writes the export of all scopes to the given writer.
+     *
+     * @see #exportOneScope(MetricRegistry.Type, Writer)
+     */
+    default void exportAllScopes(Writer writer) throws IOException {
+        writer.append(exportAllScopes());
+    }
+
+    /**
+     * Writes the export of one metric to the given writer.
+     *
+     * @see #exportOneScope(MetricRegistry.Type, Writer)
+     */
+    default void exportOneMetric(MetricRegistry.Type scope, MetricID metricID, Writer writer) throws IOException {
+        writer.append(exportOneMetric(scope, metricID));
+    }
+
+    /**
+     * Writes the export of all metrics with the given name to the given writer.
+     *
+     * @see #exportOneScope(MetricRegistry.Type, Writer)
+     */
+    default void exportMetricsByName(MetricRegistry.Type scope, String name, Writer writer) throws IOException {
+        writer.append(exportMetricsByName(scope, name));
+    }
 }
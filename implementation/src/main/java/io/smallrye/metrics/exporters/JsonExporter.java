@@ -17,7 +17,10 @@
 
 package io.smallrye.metrics.exporters;
 
+import java.io.FilterWriter;
+import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -25,12 +28,11 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
-import javax.json.JsonValue;
-import javax.json.JsonWriter;
+import javax.json.JsonException;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.metrics.ConcurrentGauge;
 import org.eclipse.microprofile.metrics.Counter;
 import org.eclipse.microprofile.metrics.Gauge;
@@ -46,64 +48,128 @@ import org.eclipse.microprofile.metrics.Timer;
 import org.jboss.logging.Logger;
 
 import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.metrics.MetricsRegistryImpl;
+import io.smallrye.metrics.RegistrySnapshot;
 
 /**
+ * Exports metrics in JSON format. The output is written incrementally through a {@link JsonGenerator}, so exporting
+ * to a {@link Writer} doesn't build the whole document in memory first.
+ * <p>
+ * The output is pretty printed unless {@code smallrye.metrics.jsonPrettyPrinting} was set to false when the exporter
+ * was created. An exporter can be used for any number of concurrent exports.
+ *
  * @author hrupp
  */
 public class JsonExporter implements Exporter {
 
     private static final Logger log = Logger.getLogger("io.smallrye.metrics");
 
+    // Pretty print the JSON output. Turning it off makes the output considerably smaller.
+    public static final String SMALLRYE_METRICS_JSON_PRETTY_PRINTING = "smallrye.metrics.jsonPrettyPrinting";
+
+    // looking up the JSON-P provider is expensive, so the factories are only created once
+    private static final JsonGeneratorFactory PRETTY_GENERATOR_FACTORY = Json
+            .createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true));
+    private static final JsonGeneratorFactory COMPACT_GENERATOR_FACTORY = Json
+            .createGeneratorFactory(Collections.emptyMap());
+
+    private final JsonGeneratorFactory generatorFactory;
+
+    public JsonExporter() {
+        this(ConfigProvider.getConfig().getOptionalValue(SMALLRYE_METRICS_JSON_PRETTY_PRINTING, Boolean.class)
+                .orElse(true));
+    }
+
+    /**
+     * Creates an exporter with the given setting instead of reading it from MicroProfile Config.
+     *
+     * @param prettyPrinting the value of {@code smallrye.metrics.jsonPrettyPrinting}
+     */
+    public JsonExporter(boolean prettyPrinting) {
+        generatorFactory = prettyPrinting ? PRETTY_GENERATOR_FACTORY : COMPACT_GENERATOR_FACTORY;
+    }
+
     @Override
     public StringBuilder exportOneScope(MetricRegistry.Type scope) {
-        return stringify(exportOneRegistry(MetricRegistries.get(scope)));
+        return exportToStringBuilder(generator -> exportOneScope(scope, generator));
+    }
+
+    @Override
+    public void exportOneScope(MetricRegistry.Type scope, Writer writer) throws IOException {
+        export(writer, generator -> exportOneScope(scope, generator));
+    }
+
+    private void exportOneScope(MetricRegistry.Type scope, JsonGenerator generator) {
+        generator.writeStartObject();
+        exportOneRegistry(MetricRegistries.get(scope), generator);
+        generator.writeEnd();
     }
 
     @Override
     public StringBuilder exportAllScopes() {
+        return exportToStringBuilder(this::exportAllScopes);
+    }
+
+    @Override
+    public void exportAllScopes(Writer writer) throws IOException {
+        export(writer, this::exportAllScopes);
+    }
 
-        JsonObjectBuilder root = Json.createObjectBuilder();
+    private void exportAllScopes(JsonGenerator generator) {
+        generator.writeStartObject();
 
-        root.add("base", exportOneRegistry(MetricRegistries.get(MetricRegistry.Type.BASE)));
-        root.add("vendor", exportOneRegistry(MetricRegistries.get(MetricRegistry.Type.VENDOR)));
-        root.add("application", exportOneRegistry(MetricRegistries.get(MetricRegistry.Type.APPLICATION)));
+        generator.writeStartObject("base");
+        exportOneRegistry(MetricRegistries.get(MetricRegistry.Type.BASE), generator);
+        generator.writeEnd();
+        generator.writeStartObject("vendor");
+        exportOneRegistry(MetricRegistries.get(MetricRegistry.Type.VENDOR), generator);
+        generator.writeEnd();
+        generator.writeStartObject("application");
+        exportOneRegistry(MetricRegistries.get(MetricRegistry.Type.APPLICATION), generator);
+        generator.writeEnd();
 
-        return stringify(root.build());
+        generator.writeEnd();
     }
 
     @Override
     public StringBuilder exportOneMetric(MetricRegistry.Type scope, MetricID metricID) {
-        MetricRegistry registry = MetricRegistries.get(scope);
-        Map<MetricID, Metric> metricMap = registry.getMetrics();
-        Map<String, Metadata> metadataMap = registry.getMetadata();
+        return exportToStringBuilder(generator -> exportOneMetric(scope, metricID, generator));
+    }
+
+    @Override
+    public void exportOneMetric(MetricRegistry.Type scope, MetricID metricID, Writer writer) throws IOException {
+        export(writer, generator -> exportOneMetric(scope, metricID, generator));
+    }
 
-        Metric m = metricMap.get(metricID);
+    private void exportOneMetric(MetricRegistry.Type scope, MetricID metricID, JsonGenerator generator) {
+        MetricsRegistryImpl registry = (MetricsRegistryImpl) MetricRegistries.get(scope);
+        Map<String, Metadata> metadataMap = registry.getMetadata();
 
-        Map<MetricID, Metric> outMap = new HashMap<>(1);
-        outMap.put(metricID, m);
+        Metric m = registry.getMetric(metricID);
 
-        JsonObjectBuilder root = Json.createObjectBuilder();
-        exportMetricsForMap(outMap, metadataMap)
-                .forEach(root::add);
-        return stringify(root.build());
+        generator.writeStartObject();
+        exportMetricsByName(Collections.singletonMap(metricID, m), metadataMap.get(metricID.getName()), generator);
+        generator.writeEnd();
     }
 
     @Override
     public StringBuilder exportMetricsByName(MetricRegistry.Type scope, String name) {
-        MetricRegistry registry = MetricRegistries.get(scope);
-        Map<MetricID, Metric> metricMap = registry.getMetrics()
-                .entrySet()
-                .stream()
-                .filter(e -> e.getKey().getName().equals(name))
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue));
+        return exportToStringBuilder(generator -> exportMetricsByName(scope, name, generator));
+    }
+
+    @Override
+    public void exportMetricsByName(MetricRegistry.Type scope, String name, Writer writer) throws IOException {
+        export(writer, generator -> exportMetricsByName(scope, name, generator));
+    }
+
+    private void exportMetricsByName(MetricRegistry.Type scope, String name, JsonGenerator generator) {
+        MetricsRegistryImpl registry = (MetricsRegistryImpl) MetricRegistries.get(scope);
+        Map<MetricID, Metric> metricMap = registry.getMetrics(name);
         Map<String, Metadata> metadataMap = registry.getMetadata();
 
-        JsonObjectBuilder root = Json.createObjectBuilder();
-        exportMetricsForMap(metricMap, metadataMap)
-                .forEach(root::add);
-        return stringify(root.build());
+        generator.writeStartObject();
+        exportMetricsForMap(metricMap, metadataMap, generator);
+        generator.writeEnd();
     }
 
     @Override
@@ -111,173 +177,157 @@ public class JsonExporter implements Exporter {
         return "application/json";
     }
 
-    private static final Map<String, ?> JSON_CONFIG = Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true);
+    private interface Export {
+        void to(JsonGenerator generator);
+    }
 
-    StringBuilder stringify(JsonObject obj) {
+    private StringBuilder exportToStringBuilder(Export export) {
         StringWriter out = new StringWriter();
-        try (JsonWriter writer = Json.createWriterFactory(JSON_CONFIG).createWriter(out)) {
-            writer.writeObject(obj);
+        try (JsonGenerator generator = generatorFactory.createGenerator(out)) {
+            export.to(generator);
         }
-        return new StringBuilder(out.toString());
+        return new StringBuilder(out.getBuffer());
     }
 
-    private Map<String, JsonValue> exportMetricsByName(Map<MetricID, Metric> metricMap, Metadata metadata) {
-        Map<String, JsonValue> result = new HashMap<>();
-        JsonObjectBuilder builder = Json.createObjectBuilder();
+    private void export(Writer writer, Export export) throws IOException {
+        // closing the generator releases its buffer, but the writer belongs to the caller and has to stay open
+        try (JsonGenerator generator = generatorFactory.createGenerator(new UncloseableWriter(writer))) {
+            export.to(generator);
+        } catch (JsonException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void exportMetricsByName(Map<MetricID, Metric> metricMap, Metadata metadata, JsonGenerator generator) {
         switch (metadata.getTypeRaw()) {
             case GAUGE:
             case COUNTER:
                 metricMap.forEach((metricID, metric) -> {
-                    result.put(metricID.getName() + createTagsString(metricID.getTagsAsList()),
-                            exportSimpleMetric(metricID, metric));
+                    exportSimpleMetric(metricID.getName() + createTagsString(metricID.getTagsAsList()), metricID, metric,
+                            generator);
                 });
                 break;
             case METERED:
+                generator.writeStartObject(metadata.getName());
                 metricMap.forEach((metricID, value) -> {
                     Metered metric = (Metered) value;
-                    meterValues(metric, createTagsString(metricID.getTagsAsList()))
-                            .forEach(builder::add);
+                    meterValues(metric, createTagsString(metricID.getTagsAsList()), generator);
                 });
-                result.put(metadata.getName(), builder.build());
+                generator.writeEnd();
                 break;
             case CONCURRENT_GAUGE:
+                generator.writeStartObject(metadata.getName());
                 metricMap.forEach((metricID, value) -> {
                     ConcurrentGauge metric = (ConcurrentGauge) value;
-                    exportConcurrentGauge(metric, createTagsString(metricID.getTagsAsList()))
-                            .forEach(builder::add);
+                    exportConcurrentGauge(metric, createTagsString(metricID.getTagsAsList()), generator);
                 });
-                result.put(metadata.getName(), builder.build());
+                generator.writeEnd();
                 break;
             case TIMER:
+                generator.writeStartObject(metadata.getName());
                 metricMap.forEach((metricID, value) -> {
                     Timer metric = (Timer) value;
-                    exportTimer(metric, metadata.getUnit().orElse(null), createTagsString(metricID.getTagsAsList()))
-                            .forEach(builder::add);
+                    exportTimer(metric, metadata.getUnit().orElse(null), createTagsString(metricID.getTagsAsList()),
+                            generator);
                 });
-                result.put(metadata.getName(), builder.build());
+                generator.writeEnd();
                 break;
             case HISTOGRAM:
+                generator.writeStartObject(metadata.getName());
                 metricMap.forEach((metricID, value) -> {
                     Histogram metric = (Histogram) value;
-                    exportHistogram(metric, createTagsString(metricID.getTagsAsList()))
-                            .forEach(builder::add);
+                    exportHistogram(metric, createTagsString(metricID.getTagsAsList()), generator);
                 });
-                result.put(metadata.getName(), builder.build());
+                generator.writeEnd();
                 break;
             default:
                 throw new IllegalArgumentException("Not supported: " + metadata.getTypeRaw());
         }
-        return result;
     }
 
-    private JsonObject exportOneRegistry(MetricRegistry registry) {
-        Map<MetricID, Metric> metricMap = registry.getMetrics();
-        Map<String, Metadata> metadataMap = registry.getMetadata();
-
-        JsonObjectBuilder root = Json.createObjectBuilder();
-        exportMetricsForMap(metricMap, metadataMap)
-                .forEach(root::add);
-        return root.build();
+    private void exportOneRegistry(MetricRegistry registry, JsonGenerator generator) {
+        RegistrySnapshot snapshot = ((MetricsRegistryImpl) registry).getSnapshot();
+        exportMetricsForMap(snapshot.getMetrics(), snapshot.getMetadata(), generator);
     }
 
-    private Map<String, JsonValue> exportMetricsForMap(Map<MetricID, Metric> metricMap, Map<String, Metadata> metadataMap) {
-        Map<String, JsonValue> result = new HashMap<>();
-
+    private void exportMetricsForMap(Map<MetricID, Metric> metricMap, Map<String, Metadata> metadataMap,
+            JsonGenerator generator) {
         // split into groups by metric name
-        Map<String, Map<MetricID, Metric>> metricsGroupedByName = metricMap.entrySet().stream()
-                .collect(Collectors.groupingBy(
-                        entry -> entry.getKey().getName(),
-                        Collectors.mapping(e -> e, Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))));
+        Map<String, Map<MetricID, Metric>> metricsGroupedByName = new HashMap<>();
+        metricMap.forEach((metricID, metric) -> metricsGroupedByName
+                .computeIfAbsent(metricID.getName(), name -> new HashMap<>())
+                .put(metricID, metric));
         // and then for each group, perform the export
-        metricsGroupedByName.entrySet().stream()
-                .map(entry -> exportMetricsByName(entry.getValue(), metadataMap.get(entry.getKey())))
-                .forEach(map -> {
-                    map.forEach(result::put);
-                });
-        return result;
+        metricsGroupedByName.forEach((name, metrics) -> exportMetricsByName(metrics, metadataMap.get(name), generator));
     }
 
-    private JsonValue exportSimpleMetric(MetricID metricID, Metric metric) {
+    private void exportSimpleMetric(String key, MetricID metricID, Metric metric, JsonGenerator generator) {
         Number val = getValueFromMetric(metric, metricID.getName());
-        if (val instanceof Double) {
-            return Json.createValue((Double) val);
-        } else if (val instanceof Float) {
-            return Json.createValue((Float) val);
+        if (val instanceof Double || val instanceof Float) {
+            generator.write(key, val.doubleValue());
         } else if (val instanceof Integer) {
-            return Json.createValue((Integer) val);
+            generator.write(key, val.intValue());
         } else if (val instanceof Long) {
-            return Json.createValue((Long) val);
+            generator.write(key, val.longValue());
         } else {
             throw new IllegalStateException();
         }
     }
 
-    private Map<String, JsonValue> meterValues(Metered meter, String tags) {
-        Map<String, JsonValue> map = new HashMap<>();
-        map.put("count" + tags, Json.createValue(meter.getCount()));
-        map.put("meanRate" + tags, Json.createValue(meter.getMeanRate()));
-        map.put("oneMinRate" + tags, Json.createValue(meter.getOneMinuteRate()));
-        map.put("fiveMinRate" + tags, Json.createValue(meter.getFiveMinuteRate()));
-        map.put("fifteenMinRate" + tags, Json.createValue(meter.getFifteenMinuteRate()));
-        return map;
-    }
-
-    private Map<String, JsonValue> exportConcurrentGauge(ConcurrentGauge concurrentGauge, String tags) {
-        Map<String, JsonValue> map = new HashMap<>();
-        map.put("current" + tags, Json.createValue(concurrentGauge.getCount()));
-        map.put("max" + tags, Json.createValue(concurrentGauge.getMax()));
-        map.put("min" + tags, Json.createValue(concurrentGauge.getMin()));
-        return map;
-    }
-
-    private JsonObject exportTimer(Timer timer, String unit, String tags) {
-        JsonObjectBuilder builder = Json.createObjectBuilder();
-        snapshotValues(timer.getSnapshot(), unit, tags)
-                .forEach(builder::add);
-        meterValues(timer, tags)
-                .forEach(builder::add);
-        return builder.build();
-    }
-
-    private Map<String, JsonValue> exportHistogram(Histogram histogram, String tags) {
-        Map<String, JsonValue> map = new HashMap<>();
-        map.put("count" + tags, Json.createValue(histogram.getCount()));
-        snapshotValues(histogram.getSnapshot(), tags)
-                .forEach((map::put));
-        return map;
-    }
-
-    private Map<String, JsonValue> snapshotValues(Snapshot snapshot, String tags) {
-        Map<String, JsonValue> map = new HashMap<>();
-        map.put("p50" + tags, Json.createValue(snapshot.getMedian()));
-        map.put("p75" + tags, Json.createValue(snapshot.get75thPercentile()));
-        map.put("p95" + tags, Json.createValue(snapshot.get95thPercentile()));
-        map.put("p98" + tags, Json.createValue(snapshot.get98thPercentile()));
-        map.put("p99" + tags, Json.createValue(snapshot.get99thPercentile()));
-        map.put("p999" + tags, Json.createValue(snapshot.get999thPercentile()));
-        map.put("min" + tags, Json.createValue(snapshot.getMin()));
-        map.put("mean" + tags, Json.createValue(snapshot.getMean()));
-        map.put("max" + tags, Json.createValue(snapshot.getMax()));
-        map.put("stddev" + tags, Json.createValue(snapshot.getStdDev()));
-        return map;
-    }
-
-    private Map<String, JsonValue> snapshotValues(Snapshot snapshot, String unit, String tags) {
-        Map<String, JsonValue> map = new HashMap<>();
-        map.put("p50" + tags, Json.createValue(toBase(snapshot.getMedian(), unit)));
-        map.put("p75" + tags, Json.createValue(toBase(snapshot.get75thPercentile(), unit)));
-        map.put("p95" + tags, Json.createValue(toBase(snapshot.get95thPercentile(), unit)));
-        map.put("p98" + tags, Json.createValue(toBase(snapshot.get98thPercentile(), unit)));
-        map.put("p99" + tags, Json.createValue(toBase(snapshot.get99thPercentile(), unit)));
-        map.put("p999" + tags, Json.createValue(toBase(snapshot.get999thPercentile(), unit)));
-        map.put("min" + tags, Json.createValue(toBase(snapshot.getMin(), unit)));
-        map.put("mean" + tags, Json.createValue(toBase(snapshot.getMean(), unit)));
-        map.put("max" + tags, Json.createValue(toBase(snapshot.getMax(), unit)));
-        map.put("stddev" + tags, Json.createValue(toBase(snapshot.getStdDev(), unit)));
-        return map;
-    }
-
-    private Double toBase(Number count, String unit) {
+    private void meterValues(Metered meter, String tags, JsonGenerator generator) {
+        generator.write("count" + tags, meter.getCount());
+        generator.write("meanRate" + tags, meter.getMeanRate());
+        generator.write("oneMinRate" + tags, meter.getOneMinuteRate());
+        generator.write("fiveMinRate" + tags, meter.getFiveMinuteRate());
+        generator.write("fifteenMinRate" + tags, meter.getFifteenMinuteRate());
+    }
+
+    private void exportConcurrentGauge(ConcurrentGauge concurrentGauge, String tags, JsonGenerator generator) {
+        generator.write("current" + tags, concurrentGauge.getCount());
+        generator.write("max" + tags, concurrentGauge.getMax());
+        generator.write("min" + tags, concurrentGauge.getMin());
+    }
+
+    private void exportTimer(Timer timer, String unit, String tags, JsonGenerator generator) {
+        snapshotValues(timer.getSnapshot(), unit, tags, generator);
+        meterValues(timer, tags, generator);
+    }
+
+    private void exportHistogram(Histogram histogram, String tags, JsonGenerator generator) {
+        generator.write("count" + tags, histogram.getCount());
+        snapshotValues(histogram.getSnapshot(), tags, generator);
+    }
+
+    private void snapshotValues(Snapshot snapshot, String tags, JsonGenerator generator) {
+        generator.write("p50" + tags, snapshot.getMedian());
+        generator.write("p75" + tags, snapshot.get75thPercentile());
+        generator.write("p95" + tags, snapshot.get95thPercentile());
+        generator.write("p98" + tags, snapshot.get98thPercentile());
+        generator.write("p99" + tags, snapshot.get99thPercentile());
+        generator.write("p999" + tags, snapshot.get999thPercentile());
+        generator.write("min" + tags, snapshot.getMin());
+        generator.write("mean" + tags, snapshot.getMean());
+        generator.write("max" + tags, snapshot.getMax());
+        generator.write("stddev" + tags, snapshot.getStdDev());
+    }
+
+    private void snapshotValues(Snapshot snapshot, String unit, String tags, JsonGenerator generator) {
+        generator.write("p50" + tags, toBase(snapshot.getMedian(), unit));
+        generator.write("p75" + tags, toBase(snapshot.get75thPercentile(), unit));
+        generator.write("p95" + tags, toBase(snapshot.get95thPercentile(), unit));
+        generator.write("p98" + tags, toBase(snapshot.get98thPercentile(), unit));
+        generator.write("p99" + tags, toBase(snapshot.get99thPercentile(), unit));
+        generator.write("p999" + tags, toBase(snapshot.get999thPercentile(), unit));
+        generator.write("min" + tags, toBase(snapshot.getMin(), unit));
+        generator.write("mean" + tags, toBase(snapshot.getMean(), unit));
+        generator.write("max" + tags, toBase(snapshot.getMax(), unit));
+        generator.write("stddev" + tags, toBase(snapshot.getStdDev(), unit));
+    }
+
+    private double toBase(Number count, String unit) {
         return ExporterUtil.convertNanosTo(count.doubleValue(), unit);
     }
 
@@ -308,11 +358,23 @@ public class JsonExporter implements Exporter {
         } else {
             return ";" + tagsAsList.stream()
                     .map(tag -> tag.getTagName() + "=" + tag.getTagValue()
-                            .replaceAll(";", "_"))
+                            .replace(';', '_'))
                     //                            .replaceAll("\"", "\\\\\""))  // this is done by JSON-P automatically
                     //                            .replaceAll("\n", "\\\\n"))  // this is done by JSON-P automatically
                     .collect(Collectors.joining(";"));
         }
     }
 
+    private static class UncloseableWriter extends FilterWriter {
+
+        UncloseableWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
 }
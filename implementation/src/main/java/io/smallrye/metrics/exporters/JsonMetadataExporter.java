@@ -29,6 +29,7 @@ import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
 import javax.json.stream.JsonGenerator;
 
 import org.eclipse.microprofile.metrics.Metadata;
@@ -36,6 +37,7 @@ import org.eclipse.microprofile.metrics.MetricID;
 import org.eclipse.microprofile.metrics.MetricRegistry;
 
 import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.metrics.MetricsRegistryImpl;
 
 /**
  * Created by bob on 1/22/18.
@@ -72,12 +74,12 @@ public class JsonMetadataExporter implements Exporter {
 
     @Override
     public StringBuilder exportMetricsByName(MetricRegistry.Type scope, String name) {
-        MetricRegistry registry = MetricRegistries.get(scope);
+        MetricsRegistryImpl registry = (MetricsRegistryImpl) MetricRegistries.get(scope);
         if (registry == null) {
             return null;
         }
 
-        Metadata metadata = registry.getMetadata().get(name);
+        Metadata metadata = registry.getMetadata(name);
 
         if (metadata == null) {
             return null;
@@ -89,11 +91,13 @@ public class JsonMetadataExporter implements Exporter {
 
     }
 
-    private static final Map<String, ?> JSON_CONFIG = Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true);
+    // looking up the JSON-P provider is expensive, so the factory is only created once
+    private static final JsonWriterFactory WRITER_FACTORY = Json
+            .createWriterFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true));
 
     StringBuilder stringify(JsonObject obj) {
         StringWriter out = new StringWriter();
-        try (JsonWriter writer = Json.createWriterFactory(JSON_CONFIG).createWriter(out)) {
+        try (JsonWriter writer = WRITER_FACTORY.createWriter(out)) {
             writer.writeObject(obj);
         }
         return new StringBuilder(out.toString());
@@ -110,13 +114,14 @@ public class JsonMetadataExporter implements Exporter {
     }
 
     private JsonObject registryJSON(MetricRegistry registry) {
+        MetricsRegistryImpl registryImpl = (MetricsRegistryImpl) registry;
         JsonObjectBuilder registryJSON = Json.createObjectBuilder();
         Map<String, Metadata> metrics = registry.getMetadata();
 
         metrics.entrySet().stream()
                 .sorted(Comparator.comparing(Map.Entry::getKey))
                 .forEach(e -> metricJSON(registryJSON, e.getKey(), e.getValue(),
-                        getKnownTagsByMetricName(registry, e.getKey())));
+                        getKnownTagsByMetricName(registryImpl, e.getKey())));
         return registryJSON.build();
     }
 
@@ -157,10 +162,10 @@ public class JsonMetadataExporter implements Exporter {
      * Return a list of all these lists (so one item in the outer list will correspond to a metric,
      * one item in each of the inner lists will correspond to a tag pertaining to that metric)
      */
-    private List<List<String>> getKnownTagsByMetricName(MetricRegistry registry, String name) {
-        return registry.getMetricIDs()
+    private List<List<String>> getKnownTagsByMetricName(MetricsRegistryImpl registry, String name) {
+        return registry.getMetricIDs(name)
                 .stream()
-                .filter(id -> id.getName().equals(name))
+                .sorted()
                 .map(id -> id.getTagsAsList()
                         .stream()
                         .map(tag -> tag.getTagName() + "=" + tag.getTagValue())
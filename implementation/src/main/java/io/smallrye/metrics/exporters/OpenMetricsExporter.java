@@ -17,13 +17,16 @@
 
 package io.smallrye.metrics.exporters;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
@@ -43,9 +46,15 @@ import org.jboss.logging.Logger;
 
 import io.smallrye.metrics.ExtendedMetadata;
 import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.metrics.MetricsRegistryImpl;
+import io.smallrye.metrics.RegistrySnapshot;
+import io.smallrye.metrics.app.FixedBucketSnapshot;
 
 /**
  * Export data in OpenMetrics text format
+ * <p>
+ * An exporter can be used for any number of concurrent exports. It reads its configuration when it is created, and
+ * caches the rendered names and labels of the exported metrics across exports.
  *
  * @author Heiko W. Rupp
  */
@@ -54,7 +63,7 @@ public class OpenMetricsExporter implements Exporter {
     private static final Logger log = Logger.getLogger("io.smallrye.metrics");
 
     // This allows to suppress the (noisy) # HELP line
-    private static final String MICROPROFILE_METRICS_OMIT_HELP_LINE = "microprofile.metrics.omitHelpLine";
+    public static final String MICROPROFILE_METRICS_OMIT_HELP_LINE = "microprofile.metrics.omitHelpLine";
     // Use a prefix to provide the MicroProfile Metrics scope. If false, the scope will be added to the metrics tag
     // with the key "microprofile_scope" instead.
     public static final String SMALLRYE_METRICS_USE_PREFIX_FOR_SCOPE = "smallrye.metrics.usePrefixForScope";
@@ -66,15 +75,19 @@ public class OpenMetricsExporter implements Exporter {
     private static final String USCORE = "_";
     private static final String COUNTER = "counter";
     private static final String QUANTILE = "quantile";
+    private static final String HISTOGRAM = "histogram";
+    private static final String LE = "le";
     private static final String NONE = "none";
 
-    private boolean writeHelpLine;
+    private final boolean writeHelpLine;
     private final boolean usePrefixForScope;
 
-    // names of metrics for which we have already exported TYPE and HELP lines within one scope
-    // this is to prevent writing them multiple times for the same metric name
-    // this should be initialized to an empty map during start of an export and cleared after the export is finished
-    private ThreadLocal<Set<String>> alreadyExportedNames = new ThreadLocal<>();
+    // rendered series per registry and MetricID, see series(). The registry removes the series of removed metrics.
+    private final Map<MetricsRegistryImpl, Map<MetricID, Series>> seriesCache = Collections
+            .synchronizedMap(new WeakHashMap<>());
+
+    // the registry snapshot of every scope that the series cache was last pruned against
+    private final Map<MetricRegistry.Type, RegistrySnapshot> prunedSnapshots = new ConcurrentHashMap<>();
 
     public OpenMetricsExporter() {
         Config config = ConfigProvider.getConfig();
@@ -83,86 +96,189 @@ public class OpenMetricsExporter implements Exporter {
         writeHelpLine = !tmp.isPresent() || !tmp.get();
     }
 
+    /**
+     * Creates an exporter with the given settings instead of reading them from MicroProfile Config.
+     *
+     * @param usePrefixForScope the value of {@code smallrye.metrics.usePrefixForScope}
+     * @param writeHelpLine the negated value of {@code microprofile.metrics.omitHelpLine}
+     */
+    public OpenMetricsExporter(boolean usePrefixForScope, boolean writeHelpLine) {
+        this.usePrefixForScope = usePrefixForScope;
+        this.writeHelpLine = writeHelpLine;
+    }
+
     @Override
     public StringBuilder exportOneScope(MetricRegistry.Type scope) {
-        alreadyExportedNames.set(new HashSet<>());
         StringBuilder sb = new StringBuilder();
-        getEntriesForScope(scope, sb);
-        alreadyExportedNames.set(null);
+        exportToStringBuilder(() -> exportOneScope(scope, sb));
         return sb;
     }
 
+    @Override
+    public void exportOneScope(MetricRegistry.Type scope, Writer writer) throws IOException {
+        exportOneScope(scope, (Appendable) writer);
+    }
+
+    private void exportOneScope(MetricRegistry.Type scope, Appendable out) throws IOException {
+        MetricsRegistryImpl registry = (MetricsRegistryImpl) MetricRegistries.get(scope);
+        getEntriesForScope(new ExportContext(scope, seriesCache(registry)), registry, out);
+    }
+
     @Override
     public StringBuilder exportAllScopes() {
         StringBuilder sb = new StringBuilder();
+        exportToStringBuilder(() -> exportAllScopes(sb));
+        return sb;
+    }
+
+    @Override
+    public void exportAllScopes(Writer writer) throws IOException {
+        exportAllScopes((Appendable) writer);
+    }
 
+    private void exportAllScopes(Appendable out) throws IOException {
         for (MetricRegistry.Type scope : MetricRegistry.Type.values()) {
-            alreadyExportedNames.set(new HashSet<>());
-            getEntriesForScope(scope, sb);
-            alreadyExportedNames.set(null);
+            exportOneScope(scope, out);
         }
+    }
 
+    @Override
+    public StringBuilder exportOneMetric(MetricRegistry.Type scope, MetricID metricID) {
+        StringBuilder sb = new StringBuilder();
+        exportToStringBuilder(() -> exportOneMetric(scope, metricID, sb));
         return sb;
     }
 
     @Override
-    public StringBuilder exportOneMetric(MetricRegistry.Type scope, MetricID metricID) {
-        alreadyExportedNames.set(new HashSet<>());
-        MetricRegistry registry = MetricRegistries.get(scope);
-        Map<MetricID, Metric> metricMap = registry.getMetrics();
+    public void exportOneMetric(MetricRegistry.Type scope, MetricID metricID, Writer writer) throws IOException {
+        exportOneMetric(scope, metricID, (Appendable) writer);
+    }
+
+    private void exportOneMetric(MetricRegistry.Type scope, MetricID metricID, Appendable out) throws IOException {
+        MetricsRegistryImpl registry = (MetricsRegistryImpl) MetricRegistries.get(scope);
 
-        Metric m = metricMap.get(metricID);
+        Metric m = registry.getMetric(metricID);
 
         Map<MetricID, Metric> outMap = new HashMap<>(1);
         outMap.put(metricID, m);
 
-        StringBuilder sb = new StringBuilder();
-        exposeEntries(scope, sb, registry, outMap);
-        alreadyExportedNames.set(null);
-        return sb;
+        exposeEntries(new ExportContext(scope, seriesCache(registry)), out, registry.getMetadata(), outMap);
     }
 
     @Override
     public StringBuilder exportMetricsByName(MetricRegistry.Type scope, String name) {
-        alreadyExportedNames.set(new HashSet<>());
-        MetricRegistry registry = MetricRegistries.get(scope);
-        Map<MetricID, Metric> metricsToExport = registry.getMetrics()
-                .entrySet()
-                .stream()
-                .filter(entry -> entry.getKey().getName().equals(name))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
         StringBuilder sb = new StringBuilder();
-        exposeEntries(scope, sb, registry, metricsToExport);
-        alreadyExportedNames.set(null);
+        exportToStringBuilder(() -> exportMetricsByName(scope, name, sb));
         return sb;
     }
 
+    @Override
+    public void exportMetricsByName(MetricRegistry.Type scope, String name, Writer writer) throws IOException {
+        exportMetricsByName(scope, name, (Appendable) writer);
+    }
+
+    private void exportMetricsByName(MetricRegistry.Type scope, String name, Appendable out) throws IOException {
+        MetricsRegistryImpl registry = (MetricsRegistryImpl) MetricRegistries.get(scope);
+        Map<MetricID, Metric> metricsToExport = registry.getMetrics(name);
+
+        exposeEntries(new ExportContext(scope, seriesCache(registry)), out, registry.getMetadata(), metricsToExport);
+    }
+
+    private interface Export {
+        void run() throws IOException;
+    }
+
+    private static void exportToStringBuilder(Export export) {
+        try {
+            export.run();
+        } catch (IOException e) {
+            // cannot happen when appending to a StringBuilder
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public String getContentType() {
         return "text/plain";
     }
 
-    private void getEntriesForScope(MetricRegistry.Type scope, StringBuilder sb) {
-        MetricRegistry registry = MetricRegistries.get(scope);
-        Map<MetricID, Metric> metricMap = registry.getMetrics();
+    private void getEntriesForScope(ExportContext context, MetricsRegistryImpl registry, Appendable out)
+            throws IOException {
+        // metrics and metadata from the same snapshot, so that every metric is guaranteed to have its metadata
+        RegistrySnapshot snapshot = registry.getSnapshot();
+
+        if (prunedSnapshots.put(context.scope, snapshot) != snapshot) {
+            // the registry removes the series of removed metrics, this only catches a series that an export
+            // put back concurrently with the removal of its metric
+            context.series.keySet().retainAll(snapshot.getMetrics().keySet());
+        }
+        exposeEntries(context, out, snapshot.getMetadata(), snapshot.getMetrics());
+    }
+
+    private Map<MetricID, Series> seriesCache(MetricsRegistryImpl registry) {
+        synchronized (seriesCache) {
+            Map<MetricID, Series> series = seriesCache.get(registry);
+            if (series == null) {
+                series = new ConcurrentHashMap<>();
+                seriesCache.put(registry, series);
+                registry.addRemovalListener(series::remove);
+            }
+            return series;
+        }
+    }
+
+    /*
+     * The state of one export of a scope. A new context is used for every export, so that one exporter instance can
+     * serve any number of concurrent exports.
+     */
+    private static class ExportContext {
+        private final MetricRegistry.Type scope;
+
+        // the cached series of the exported registry
+        private final Map<MetricID, Series> series;
+
+        // names of metrics for which we have already exported TYPE and HELP lines within the scope
+        // this is to prevent writing them multiple times for the same metric name
+        private final Set<String> exportedNames = new HashSet<>();
+
+        ExportContext(MetricRegistry.Type scope, Map<MetricID, Series> series) {
+            this.scope = scope;
+            this.series = series;
+        }
+    }
 
-        exposeEntries(scope, sb, registry, metricMap);
+    /*
+     * Returns the cached series of a metric. A metric that has been removed and registered again under the same
+     * MetricID is a different instance, and may have different metadata, so the cached series is only used for the
+     * same instances of the metric and its metadata.
+     */
+    private Series series(ExportContext context, MetricID metricID, Metric metric, Metadata md) {
+        Series series = context.series.get(metricID);
+        if (series == null || series.metric != metric || series.metadata != md) {
+            series = new Series(context.scope, metricID.getTags(), metric, md);
+            context.series.put(metricID, series);
+        }
+        return series;
     }
 
-    private void exposeEntries(MetricRegistry.Type scope, StringBuilder sb, MetricRegistry registry,
-            Map<MetricID, Metric> metricMap) {
+    /*
+     * Every metric is first written to metricBuf, which is only appended to out if the metric could be exported
+     * completely. metricBuf is reused for all metrics, so that writing to a Writer only buffers one metric at a time.
+     */
+    private void exposeEntries(ExportContext context, Appendable out, Map<String, Metadata> metadataMap,
+            Map<MetricID, Metric> metricMap) throws IOException {
+        StringBuilder metricBuf = new StringBuilder();
         for (Map.Entry<MetricID, Metric> entry : metricMap.entrySet()) {
             String key = entry.getKey().getName();
-            Metadata md = registry.getMetadata().get(key);
+            Metadata md = metadataMap.get(key);
 
             if (md == null) {
                 throw new IllegalStateException("No entry for " + key + " found");
             }
 
             Metric metric = entry.getValue();
-            final Map<String, String> tagsMap = entry.getKey().getTags();
-            StringBuilder metricBuf = new StringBuilder();
+            final Series series = series(context, entry.getKey(), metric, md);
+            metricBuf.setLength(0);
 
             try {
                 switch (md.getTypeRaw()) {
@@ -173,47 +289,48 @@ public class OpenMetricsExporter implements Exporter {
                         if (!unit.equals(NONE)) {
                             unitSuffix = "_" + unit;
                         }
-                        writeHelpLine(metricBuf, scope, key, md, unitSuffix);
-                        writeTypeLine(metricBuf, scope, key, md, unitSuffix, null);
-                        createSimpleValueLine(metricBuf, scope, key, md, metric, null, tagsMap);
+                        writeHelpLine(metricBuf, context, key, md, unitSuffix);
+                        writeTypeLine(metricBuf, context, key, md, unitSuffix, null);
+                        createSimpleValueLine(metricBuf, key, md, metric, null, series);
                         break;
                     }
                     case COUNTER:
                         key = getOpenMetricsMetricName(key);
                         String suffix = key.endsWith("_total") ? null : "_total";
-                        writeHelpLine(metricBuf, scope, key, md, suffix);
-                        writeTypeLine(metricBuf, scope, key, md, suffix, null);
-                        createSimpleValueLine(metricBuf, scope, key, md, metric, suffix, tagsMap);
+                        writeHelpLine(metricBuf, context, key, md, suffix);
+                        writeTypeLine(metricBuf, context, key, md, suffix, null);
+                        createSimpleValueLine(metricBuf, key, md, metric, suffix, series);
                         break;
                     case CONCURRENT_GAUGE:
                         ConcurrentGauge concurrentGauge = (ConcurrentGauge) metric;
-                        writeConcurrentGaugeValues(sb, scope, concurrentGauge, md, key, tagsMap);
+                        writeConcurrentGaugeValues(metricBuf, context, concurrentGauge, md, key, series);
                         break;
                     case METERED:
                         Metered meter = (Metered) metric;
-                        writeMeterValues(metricBuf, scope, meter, md, tagsMap);
+                        writeMeterValues(metricBuf, context, meter, md, series);
                         break;
                     case TIMER:
                         Timer timer = (Timer) metric;
-                        writeTimerValues(metricBuf, scope, timer, md, tagsMap);
+                        writeTimerValues(metricBuf, context, timer, md, series);
                         break;
                     case HISTOGRAM:
                         Histogram histogram = (Histogram) metric;
-                        writeHistogramValues(metricBuf, scope, histogram, md, tagsMap);
+                        writeHistogramValues(metricBuf, context, histogram, md, series);
                         break;
                     default:
                         throw new IllegalArgumentException("Not supported: " + key);
                 }
-                sb.append(metricBuf);
-                alreadyExportedNames.get().add(md.getName());
+                context.exportedNames.add(md.getName());
             } catch (Exception e) {
                 log.warn("Unable to export metric " + key, e);
+                continue;
             }
+            out.append(metricBuf);
         }
     }
 
-    private void writeTimerValues(StringBuilder sb, MetricRegistry.Type scope, Timer timer, Metadata md,
-            Map<String, String> tags) {
+    private void writeTimerValues(StringBuilder sb, ExportContext context, Timer timer, Metadata md,
+            Series series) {
 
         String unit = OpenMetricsUnit.getBaseUnitAsOpenMetricsString(md.getUnit());
         if (unit.equals(NONE))
@@ -221,28 +338,32 @@ public class OpenMetricsExporter implements Exporter {
 
         String theUnit = USCORE + unit;
 
-        writeMeterRateValues(sb, scope, timer, md, tags);
+        writeMeterRateValues(sb, context, timer, md, series);
         Snapshot snapshot = timer.getSnapshot();
-        writeSnapshotBasics(sb, scope, md, snapshot, theUnit, true, tags);
+        writeSnapshotBasics(sb, context, md, snapshot, theUnit, true, series);
 
-        writeHelpLine(sb, scope, md.getName(), md, theUnit);
-        writeTypeLine(sb, scope, md.getName(), md, theUnit, SUMMARY);
-        writeValueLine(sb, scope, theUnit + "_count", timer.getCount(), md, tags, false);
+        writeHelpLine(sb, context, md.getName(), md, theUnit);
+        if (snapshot instanceof FixedBucketSnapshot) {
+            writeSnapshotBuckets(sb, context, md, (FixedBucketSnapshot) snapshot, theUnit, series);
+            return;
+        }
+        writeTypeLine(sb, context, md.getName(), md, theUnit, SUMMARY);
+        writeValueLine(sb, theUnit + "_count", timer.getCount(), md, series, false);
 
-        writeSnapshotQuantiles(sb, scope, md, snapshot, theUnit, true, tags);
+        writeSnapshotQuantiles(sb, context, md, snapshot, theUnit, true, series);
     }
 
-    private void writeConcurrentGaugeValues(StringBuilder sb, MetricRegistry.Type scope, ConcurrentGauge concurrentGauge,
-            Metadata md, String key, Map<String, String> tags) {
+    private void writeConcurrentGaugeValues(StringBuilder sb, ExportContext context, ConcurrentGauge concurrentGauge,
+            Metadata md, String key, Series series) {
         key = getOpenMetricsMetricName(key);
-        writeHelpLine(sb, scope, key, md, "_current");
-        writeTypeAndValue(sb, scope, "_current", concurrentGauge.getCount(), GAUGE, md, false, tags);
-        writeTypeAndValue(sb, scope, "_max", concurrentGauge.getMax(), GAUGE, md, false, tags);
-        writeTypeAndValue(sb, scope, "_min", concurrentGauge.getMin(), GAUGE, md, false, tags);
+        writeHelpLine(sb, context, key, md, "_current");
+        writeTypeAndValue(sb, context, "_current", concurrentGauge.getCount(), GAUGE, md, false, series);
+        writeTypeAndValue(sb, context, "_max", concurrentGauge.getMax(), GAUGE, md, false, series);
+        writeTypeAndValue(sb, context, "_min", concurrentGauge.getMin(), GAUGE, md, false, series);
     }
 
-    private void writeHistogramValues(StringBuilder sb, MetricRegistry.Type scope, Histogram histogram, Metadata md,
-            Map<String, String> tags) {
+    private void writeHistogramValues(StringBuilder sb, ExportContext context, Histogram histogram, Metadata md,
+            Series series) {
 
         Snapshot snapshot = histogram.getSnapshot();
         Optional<String> optUnit = md.getUnit();
@@ -250,161 +371,129 @@ public class OpenMetricsExporter implements Exporter {
 
         String theUnit = unit.equals("none") ? "" : USCORE + unit;
 
-        writeHelpLine(sb, scope, md.getName(), md, theUnit);
-        writeSnapshotBasics(sb, scope, md, snapshot, theUnit, true, tags);
-        writeTypeLine(sb, scope, md.getName(), md, theUnit, SUMMARY);
-        writeValueLine(sb, scope, theUnit + "_count", histogram.getCount(), md, tags, false);
-        writeSnapshotQuantiles(sb, scope, md, snapshot, theUnit, true, tags);
+        writeHelpLine(sb, context, md.getName(), md, theUnit);
+        writeSnapshotBasics(sb, context, md, snapshot, theUnit, true, series);
+        if (snapshot instanceof FixedBucketSnapshot) {
+            writeSnapshotBuckets(sb, context, md, (FixedBucketSnapshot) snapshot, theUnit, series);
+            return;
+        }
+        writeTypeLine(sb, context, md.getName(), md, theUnit, SUMMARY);
+        writeValueLine(sb, theUnit + "_count", histogram.getCount(), md, series, false);
+        writeSnapshotQuantiles(sb, context, md, snapshot, theUnit, true, series);
     }
 
-    private void writeSnapshotBasics(StringBuilder sb, MetricRegistry.Type scope, Metadata md, Snapshot snapshot, String unit,
-            boolean performScaling, Map<String, String> tags) {
+    private void writeSnapshotBasics(StringBuilder sb, ExportContext context, Metadata md, Snapshot snapshot, String unit,
+            boolean performScaling, Series series) {
 
-        writeTypeAndValue(sb, scope, "_min" + unit, snapshot.getMin(), GAUGE, md, performScaling, tags);
-        writeTypeAndValue(sb, scope, "_max" + unit, snapshot.getMax(), GAUGE, md, performScaling, tags);
-        writeTypeAndValue(sb, scope, "_mean" + unit, snapshot.getMean(), GAUGE, md, performScaling, tags);
-        writeTypeAndValue(sb, scope, "_stddev" + unit, snapshot.getStdDev(), GAUGE, md, performScaling, tags);
+        writeTypeAndValue(sb, context, "_min" + unit, snapshot.getMin(), GAUGE, md, performScaling, series);
+        writeTypeAndValue(sb, context, "_max" + unit, snapshot.getMax(), GAUGE, md, performScaling, series);
+        writeTypeAndValue(sb, context, "_mean" + unit, snapshot.getMean(), GAUGE, md, performScaling, series);
+        writeTypeAndValue(sb, context, "_stddev" + unit, snapshot.getStdDev(), GAUGE, md, performScaling, series);
     }
 
-    private void writeSnapshotQuantiles(StringBuilder sb, MetricRegistry.Type scope, Metadata md, Snapshot snapshot,
+    private void writeSnapshotQuantiles(StringBuilder sb, ExportContext context, Metadata md, Snapshot snapshot,
             String unit,
-            boolean performScaling, Map<String, String> tags) {
-        Map<String, String> map = copyMap(tags);
-        map.put(QUANTILE, "0.5");
-        writeValueLine(sb, scope, unit, snapshot.getMedian(), md, map, performScaling);
-        map.put(QUANTILE, "0.75");
-        writeValueLine(sb, scope, unit, snapshot.get75thPercentile(), md, map, performScaling);
-        map.put(QUANTILE, "0.95");
-        writeValueLine(sb, scope, unit, snapshot.get95thPercentile(), md, map, performScaling);
-        map.put(QUANTILE, "0.98");
-        writeValueLine(sb, scope, unit, snapshot.get98thPercentile(), md, map, performScaling);
-        map.put(QUANTILE, "0.99");
-        writeValueLine(sb, scope, unit, snapshot.get99thPercentile(), md, map, performScaling);
-        map.put(QUANTILE, "0.999");
-        writeValueLine(sb, scope, unit, snapshot.get999thPercentile(), md, map, performScaling);
-    }
-
-    private void writeMeterValues(StringBuilder sb, MetricRegistry.Type scope, Metered metric, Metadata md,
-            Map<String, String> tags) {
-        writeHelpLine(sb, scope, md.getName(), md, "_total");
-        writeTypeAndValue(sb, scope, "_total", metric.getCount(), COUNTER, md, false, tags);
-        writeMeterRateValues(sb, scope, metric, md, tags);
-    }
-
-    private void writeMeterRateValues(StringBuilder sb, MetricRegistry.Type scope, Metered metric, Metadata md,
-            Map<String, String> tags) {
-        writeTypeAndValue(sb, scope, "_rate_per_second", metric.getMeanRate(), GAUGE, md, false, tags);
-        writeTypeAndValue(sb, scope, "_one_min_rate_per_second", metric.getOneMinuteRate(), GAUGE, md, false, tags);
-        writeTypeAndValue(sb, scope, "_five_min_rate_per_second", metric.getFiveMinuteRate(), GAUGE, md, false, tags);
-        writeTypeAndValue(sb, scope, "_fifteen_min_rate_per_second", metric.getFifteenMinuteRate(), GAUGE, md, false, tags);
-    }
-
-    private void writeTypeAndValue(StringBuilder sb, MetricRegistry.Type scope, String suffix, double valueRaw, String type,
-            Metadata md, boolean performScaling, Map<String, String> tags) {
-        String key = md.getName();
-        writeTypeLine(sb, scope, key, md, suffix, type);
-        writeValueLine(sb, scope, suffix, valueRaw, md, tags, performScaling);
+            boolean performScaling, Series series) {
+        writeValueLine(sb, unit, QUANTILE, "0.5", snapshot.getMedian(), md, series, performScaling);
+        writeValueLine(sb, unit, QUANTILE, "0.75", snapshot.get75thPercentile(), md, series, performScaling);
+        writeValueLine(sb, unit, QUANTILE, "0.95", snapshot.get95thPercentile(), md, series, performScaling);
+        writeValueLine(sb, unit, QUANTILE, "0.98", snapshot.get98thPercentile(), md, series, performScaling);
+        writeValueLine(sb, unit, QUANTILE, "0.99", snapshot.get99thPercentile(), md, series, performScaling);
+        writeValueLine(sb, unit, QUANTILE, "0.999", snapshot.get999thPercentile(), md, series, performScaling);
     }
 
-    private void writeValueLine(StringBuilder sb, MetricRegistry.Type scope, String suffix, double valueRaw, Metadata md) {
-        writeValueLine(sb, scope, suffix, valueRaw, md, null);
+    /*
+     * Writes an OpenMetrics histogram instead of a summary. The _count is the count of the +Inf bucket rather than
+     * the count of the metric, so that it is consistent with the buckets.
+     */
+    private void writeSnapshotBuckets(StringBuilder sb, ExportContext context, Metadata md,
+            FixedBucketSnapshot snapshot, String unit, Series series) {
+        writeTypeLine(sb, context, md.getName(), md, unit, HISTOGRAM);
+        long[] boundaries = snapshot.getBoundaries();
+        long[] cumulativeCounts = snapshot.getCumulativeCounts();
+        String bucket = unit + "_bucket";
+        for (int i = 0; i < boundaries.length; i++) {
+            String le = String.valueOf(scale(md, boundaries[i]));
+            writeValueLine(sb, bucket, LE, le, cumulativeCounts[i], md, series, false);
+        }
+        writeValueLine(sb, bucket, LE, "+Inf", snapshot.getCount(), md, series, false);
+        writeValueLine(sb, unit + "_sum", snapshot.getSum(), md, series, true);
+        writeValueLine(sb, unit + "_count", snapshot.getCount(), md, series, false);
     }
 
-    private void writeValueLine(StringBuilder sb, MetricRegistry.Type scope, String suffix, double valueRaw, Metadata md,
-            Map<String, String> tags) {
-        writeValueLine(sb, scope, suffix, valueRaw, md, tags, true);
+    private void writeMeterValues(StringBuilder sb, ExportContext context, Metered metric, Metadata md,
+            Series series) {
+        writeHelpLine(sb, context, md.getName(), md, "_total");
+        writeTypeAndValue(sb, context, "_total", metric.getCount(), COUNTER, md, false, series);
+        writeMeterRateValues(sb, context, metric, md, series);
     }
 
-    private void writeValueLine(StringBuilder sb,
-            MetricRegistry.Type scope,
-            String suffix,
-            double valueRaw,
-            Metadata md,
-            Map<String, String> tags,
-            boolean performScaling) {
-        String name = md.getName();
-        name = getOpenMetricsMetricName(name);
-        fillBaseName(sb, scope, name, suffix, md);
+    private void writeMeterRateValues(StringBuilder sb, ExportContext context, Metered metric, Metadata md,
+            Series series) {
+        writeTypeAndValue(sb, context, "_rate_per_second", metric.getMeanRate(), GAUGE, md, false, series);
+        writeTypeAndValue(sb, context, "_one_min_rate_per_second", metric.getOneMinuteRate(), GAUGE, md, false, series);
+        writeTypeAndValue(sb, context, "_five_min_rate_per_second", metric.getFiveMinuteRate(), GAUGE, md, false, series);
+        writeTypeAndValue(sb, context, "_fifteen_min_rate_per_second", metric.getFifteenMinuteRate(), GAUGE, md, false, series);
+    }
 
-        // add tags
+    private void writeTypeAndValue(StringBuilder sb, ExportContext context, String suffix, double valueRaw, String type,
+            Metadata md, boolean performScaling, Series series) {
+        String key = md.getName();
+        writeTypeLine(sb, context, key, md, suffix, type);
+        writeValueLine(sb, suffix, valueRaw, md, series, performScaling);
+    }
 
-        if (tags != null) {
-            addTags(sb, tags, scope, md);
-        }
+    private void writeValueLine(StringBuilder sb, String suffix, double valueRaw, Metadata md, Series series,
+            boolean performScaling) {
+        series.appendPrefix(sb, suffix, null, null);
+        appendValue(sb, valueRaw, md, performScaling);
+    }
 
+    // writes a value line with an additional label, like the quantile of a summary
+    private void writeValueLine(StringBuilder sb, String suffix, String label, String labelValue, double valueRaw,
+            Metadata md, Series series, boolean performScaling) {
+        series.appendPrefix(sb, suffix, label, labelValue);
+        appendValue(sb, valueRaw, md, performScaling);
+    }
+
+    private void appendValue(StringBuilder sb, double valueRaw, Metadata md, boolean performScaling) {
         sb.append(SPACE);
 
         Double value;
         if (performScaling) {
-            String scaleFrom = "nanoseconds";
-            if (md.getTypeRaw() == MetricType.HISTOGRAM)
-                // for histograms, internally the data is stored using the metric's unit
-                scaleFrom = md.getUnit().orElse(NONE);
-            value = OpenMetricsUnit.scaleToBase(scaleFrom, valueRaw);
+            value = scale(md, valueRaw);
         } else {
             value = valueRaw;
         }
         sb.append(value).append(LF);
-
-    }
-
-    private void addTags(StringBuilder sb, Map<String, String> tags, MetricRegistry.Type scope, Metadata metadata) {
-        if (tags == null || tags.isEmpty()) {
-            // always add the microprofile_scope even if there are no other tags
-            if (!writeScopeInPrefix(metadata)) {
-                sb.append("{microprofile_scope=\"" + scope.getName().toLowerCase() + "\"}");
-            }
-            return;
-        } else {
-            Iterator<Map.Entry<String, String>> iter = tags.entrySet().iterator();
-            sb.append("{");
-            while (iter.hasNext()) {
-                Map.Entry<String, String> tag = iter.next();
-                sb.append(tag.getKey()).append("=\"").append(quoteValue(tag.getValue())).append("\"");
-                if (iter.hasNext()) {
-                    sb.append(",");
-                }
-            }
-            // append the microprofile_scope after other tags
-            if (!writeScopeInPrefix(metadata)) {
-                sb.append(",microprofile_scope=\"" + scope.getName().toLowerCase() + "\"");
-            }
-
-            sb.append("}");
-        }
-    }
-
-    private <K, V> Map<K, V> copyMap(Map<K, V> map) {
-        return map.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
     }
 
-    private void fillBaseName(StringBuilder sb, MetricRegistry.Type scope, String key, String suffix, Metadata metadata) {
-        if (writeScopeInPrefix(metadata)) {
-            sb.append(scope.getName().toLowerCase()).append("_");
-        }
-        sb.append(key);
-        if (suffix != null)
-            sb.append(suffix);
+    private Double scale(Metadata md, double valueRaw) {
+        String scaleFrom = "nanoseconds";
+        if (md.getTypeRaw() == MetricType.HISTOGRAM)
+            // for histograms, internally the data is stored using the metric's unit
+            scaleFrom = md.getUnit().orElse(NONE);
+        return OpenMetricsUnit.scaleToBase(scaleFrom, valueRaw);
     }
 
-    private void writeHelpLine(final StringBuilder sb, MetricRegistry.Type scope, String key, Metadata md, String suffix) {
+    private void writeHelpLine(StringBuilder sb, ExportContext context, String key, Metadata md, String suffix) {
         // Only write this line if we actually have a description in metadata
         Optional<String> description = md.getDescription();
         if (writeHelpLine && description.filter(s -> !s.isEmpty()).isPresent()
-                && !alreadyExportedNames.get().contains(md.getName())) {
+                && !context.exportedNames.contains(md.getName())) {
             sb.append("# HELP ");
-            getNameWithScopeAndSuffix(sb, scope, key, suffix, md);
+            getNameWithScopeAndSuffix(sb, context.scope, key, suffix, md);
             sb.append(quoteHelpText(description.get()));
             sb.append(LF);
         }
 
     }
 
-    private void writeTypeLine(StringBuilder sb, MetricRegistry.Type scope, String key, Metadata md, String suffix,
+    private void writeTypeLine(StringBuilder sb, ExportContext context, String key, Metadata md, String suffix,
             String typeOverride) {
-        if (!alreadyExportedNames.get().contains(md.getName())) {
+        if (!context.exportedNames.contains(md.getName())) {
             sb.append("# TYPE ");
-            getNameWithScopeAndSuffix(sb, scope, key, suffix, md);
+            getNameWithScopeAndSuffix(sb, context.scope, key, suffix, md);
             if (typeOverride != null) {
                 sb.append(typeOverride);
             } else if (md.getTypeRaw().equals(MetricType.TIMER)) {
@@ -430,17 +519,15 @@ public class OpenMetricsExporter implements Exporter {
         sb.append(SPACE);
     }
 
-    private void createSimpleValueLine(StringBuilder sb, MetricRegistry.Type scope, String key, Metadata md, Metric metric,
-            String suffix, Map<String, String> tags) {
+    private void createSimpleValueLine(StringBuilder sb, String key, Metadata md, Metric metric, String suffix,
+            Series series) {
 
         // value line
-        fillBaseName(sb, scope, key, suffix, md);
         String unit = OpenMetricsUnit.getBaseUnitAsOpenMetricsString(md.getUnit());
         if (!unit.equals(NONE)) {
-            sb.append(USCORE).append(unit);
+            suffix = (suffix == null ? "" : suffix) + USCORE + unit;
         }
-
-        addTags(sb, tags, scope, md);
+        series.appendPrefix(sb, suffix, null, null);
 
         double valIn;
         if (md.getTypeRaw().equals(MetricType.GAUGE)) {
@@ -460,12 +547,124 @@ public class OpenMetricsExporter implements Exporter {
 
     }
 
+    /*
+     * The name and labels of the lines of one metric. Rendering them involves sanitizing the name and escaping the
+     * label values, and the result only changes when the metric is replaced, so only the base name and the labels
+     * are rendered once, and the suffixes and additional labels of the lines are appended on every write.
+     */
+    private final class Series {
+        private final Metric metric;
+        private final Metadata metadata;
+        // the sanitized name, with the scope if it is written in the prefix
+        private final String baseName;
+        // the labels of the tags without braces, empty if there are no tags
+        private final String tagLabels;
+        // the microprofile_scope label, null if the scope is written in the prefix
+        private final String scopeLabel;
+
+        private Series(MetricRegistry.Type scope, Map<String, String> tags, Metric metric, Metadata metadata) {
+            this.metric = metric;
+            this.metadata = metadata;
+            String name = getOpenMetricsMetricName(metadata.getName());
+            boolean scopeInPrefix = writeScopeInPrefix(metadata);
+            this.baseName = scopeInPrefix ? scope.getName().toLowerCase() + USCORE + name : name;
+            StringBuilder sb = new StringBuilder();
+            if (tags != null) {
+                for (Map.Entry<String, String> tag : tags.entrySet()) {
+                    if (sb.length() > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(tag.getKey()).append("=\"").append(quoteValue(tag.getValue())).append('"');
+                }
+            }
+            this.tagLabels = sb.toString();
+            this.scopeLabel = scopeInPrefix ? null : "microprofile_scope=\"" + scope.getName().toLowerCase() + "\"";
+        }
+
+        /*
+         * Appends name{labels} of a line, with an optional additional label like the quantile of a summary, which
+         * goes between the tags and the scope.
+         */
+        private void appendPrefix(StringBuilder sb, String suffix, String label, String labelValue) {
+            sb.append(baseName);
+            if (suffix != null) {
+                sb.append(suffix);
+            }
+            char separator = '{';
+            if (!tagLabels.isEmpty()) {
+                sb.append(separator).append(tagLabels);
+                separator = ',';
+            }
+            if (label != null) {
+                sb.append(separator).append(label).append("=\"").append(quoteValue(labelValue)).append('"');
+                separator = ',';
+            }
+            if (scopeLabel != null) {
+                sb.append(separator).append(scopeLabel);
+                separator = ',';
+            }
+            if (separator == ',') {
+                sb.append('}');
+            }
+        }
+    }
+
+    /*
+     * Replaces every run of characters other than [a-zA-Z0-9_] with a single underscore, and then every pair of
+     * underscores with a single one, in one pass over the name. Names that need no replacement are returned as is.
+     */
     static String getOpenMetricsMetricName(String name) {
-        String out = name.replaceAll("[^\\w]+", USCORE);
-        out = out.replace("__", USCORE);
-        out = out.replace(":_", ":");
+        int length = name.length();
+        int i = 0;
+        while (i < length && isWordChar(name.charAt(i))
+                && !(name.charAt(i) == '_' && i + 1 < length && name.charAt(i + 1) == '_')) {
+            i++;
+        }
+        if (i == length) {
+            return name;
+        }
+
+        if (i > 0 && name.charAt(i - 1) == '_') {
+            // it might be merged with an underscore replacing the characters that follow
+            i--;
+        }
+        StringBuilder out = new StringBuilder(length);
+        out.append(name, 0, i);
+        // an underscore that might still be merged with the next one
+        boolean pendingUnderscore = false;
+        boolean inRun = false;
+        for (; i < length; i++) {
+            char c = name.charAt(i);
+            if (!isWordChar(c)) {
+                if (inRun) {
+                    continue;
+                }
+                inRun = true;
+                c = '_';
+            } else {
+                inRun = false;
+            }
+            if (c == '_') {
+                if (pendingUnderscore) {
+                    out.append('_');
+                }
+                pendingUnderscore = !pendingUnderscore;
+            } else {
+                if (pendingUnderscore) {
+                    out.append('_');
+                    pendingUnderscore = false;
+                }
+                out.append(c);
+            }
+        }
+        if (pendingUnderscore) {
+            out.append('_');
+        }
+        return out.toString();
+    }
 
-        return out;
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
     }
 
     private boolean writeScopeInPrefix(Metadata metadata) {
@@ -477,22 +676,65 @@ public class OpenMetricsExporter implements Exporter {
         }
     }
 
+    /**
+     * Escapes a help text: a backslash is doubled unless it is followed by {@code n}, and a backslash at the end of
+     * the text is doubled as well. Texts without backslashes are returned as is.
+     */
     public static String quoteHelpText(String value) {
-        return value
-                // replace \ with \\, unless it is followed by n, in which case it is a newline character, which should not be changed
-                .replaceAll("\\\\([^n])", "\\\\\\\\$1")
-                // replace \ at the end of the value with \\
-                .replaceAll("\\\\$", "\\\\\\\\");
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        return escape(value, false);
     }
 
+    /**
+     * Escapes a label value like {@link #quoteHelpText(String)}, and additionally escapes double quotes.
+     * Values without backslashes and double quotes are returned as is.
+     */
     public static String quoteValue(String value) {
-        return value
-                // replace \ with \\, unless it is followed by n, in which case it is a newline character, which should not be changed
-                .replaceAll("\\\\([^n])", "\\\\\\\\$1")
-                // replace " with \"
-                .replaceAll("\"", "\\\\\"")
-                // replace \ at the end of the value with \\
-                .replaceAll("\\\\$", "\\\\\\\\");
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return escape(value, true);
+    }
+
+    private static String escape(String value, boolean quotes) {
+        int length = value.length();
+        StringBuilder out = new StringBuilder(length + 8);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < length && value.charAt(i + 1) != 'n') {
+                // \ followed by anything but n (a newline character, which should not be changed) becomes \\,
+                // and the character after it is taken as is, even if it is a backslash itself
+                out.append("\\\\");
+                c = value.charAt(++i);
+            }
+            if (quotes && c == '"') {
+                out.append("\\\"");
+            } else {
+                out.append(c);
+            }
+        }
+        // \ at the end of the value, or right before a line terminator ending the value, becomes \\
+        int end = out.length() - lineTerminatorLength(out);
+        if (end > 0 && out.charAt(end - 1) == '\\') {
+            out.insert(end, '\\');
+        }
+        return out.toString();
+    }
+
+    private static int lineTerminatorLength(CharSequence sb) {
+        int length = sb.length();
+        if (length >= 2 && sb.charAt(length - 2) == '\r' && sb.charAt(length - 1) == '\n') {
+            return 2;
+        }
+        if (length >= 1) {
+            char last = sb.charAt(length - 1);
+            if (last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+                return 1;
+            }
+        }
+        return 0;
     }
 
 }
@@ -30,10 +30,11 @@ import javax.interceptor.InvocationContext;
 
 import org.eclipse.microprofile.metrics.MetricID;
 import org.eclipse.microprofile.metrics.MetricRegistry;
-import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.MetricType;
 import org.eclipse.microprofile.metrics.annotation.ConcurrentGauge;
 import org.jboss.logging.Logger;
 
+import io.smallrye.metrics.MetricsRegistryImpl;
 import io.smallrye.metrics.elementdesc.adapter.BeanInfoAdapter;
 import io.smallrye.metrics.elementdesc.adapter.cdi.CDIBeanInfoAdapter;
 import io.smallrye.metrics.elementdesc.adapter.cdi.CDIMemberInfoAdapter;
@@ -50,12 +51,16 @@ public class ConcurrentGaugeInterceptor {
 
     private final MetricRegistry registry;
 
+    // the injected registry if it is a MetricsRegistryImpl, which lets concurrentCallable skip the resolution
+    private final MetricsRegistryImpl registryImpl;
+
     private final MetricResolver resolver;
 
     @Inject
     ConcurrentGaugeInterceptor(@Intercepted Bean<?> bean, MetricRegistry registry) {
         this.bean = bean;
         this.registry = registry;
+        this.registryImpl = registry instanceof MetricsRegistryImpl ? (MetricsRegistryImpl) registry : null;
         this.resolver = new MetricResolver();
     }
 
@@ -76,27 +81,39 @@ public class ConcurrentGaugeInterceptor {
 
     private <E extends Member & AnnotatedElement> Object concurrentCallable(InvocationContext context, E element)
             throws Exception {
-        BeanInfoAdapter<Class<?>> beanInfoAdapter = new CDIBeanInfoAdapter();
-        CDIMemberInfoAdapter memberInfoAdapter = new CDIMemberInfoAdapter();
-        MetricResolver.Of<ConcurrentGauge> concurrentGaugeResolver = resolver.concurrentGauge(
-                bean != null ? beanInfoAdapter.convert(bean.getBeanClass())
-                        : beanInfoAdapter.convert(element.getDeclaringClass()),
-                memberInfoAdapter.convert(element));
-        String name = concurrentGaugeResolver.metricName();
-        Tag[] tags = concurrentGaugeResolver.tags();
-        MetricID metricID = new MetricID(name, tags);
-        org.eclipse.microprofile.metrics.ConcurrentGauge concurrentGauge = registry.getConcurrentGauges().get(metricID);
+        Class<?> beanClass = bean != null ? bean.getBeanClass() : element.getDeclaringClass();
+        org.eclipse.microprofile.metrics.ConcurrentGauge concurrentGauge = registryImpl == null ? null
+                : registryImpl.getBoundMetric(MetricType.CONCURRENT_GAUGE, beanClass, element);
         if (concurrentGauge == null) {
-            throw new IllegalStateException(
-                    "No concurrent gauge with metricID [" + metricID + "] found in registry [" + registry + "]");
+            concurrentGauge = resolveConcurrentGauge(beanClass, element);
         }
-        log.tracef("Increment concurrent gauge [metricId: %s]", metricID);
+        log.tracef("Increment concurrent gauge [member: %s]", element);
         concurrentGauge.inc();
         try {
             return context.proceed();
         } finally {
-            log.tracef("Decrement concurrent gauge [metricID: %s]", metricID);
+            log.tracef("Decrement concurrent gauge [member: %s]", element);
             concurrentGauge.dec();
         }
     }
+
+    private <E extends Member & AnnotatedElement> org.eclipse.microprofile.metrics.ConcurrentGauge resolveConcurrentGauge(
+            Class<?> beanClass, E element) {
+        BeanInfoAdapter<Class<?>> beanInfoAdapter = new CDIBeanInfoAdapter();
+        CDIMemberInfoAdapter memberInfoAdapter = new CDIMemberInfoAdapter();
+        MetricResolver.Of<ConcurrentGauge> resolved = resolver.concurrentGauge(beanInfoAdapter.convert(beanClass),
+                memberInfoAdapter.convert(element));
+        MetricID metricID = new MetricID(resolved.metricName(), resolved.tags());
+        org.eclipse.microprofile.metrics.ConcurrentGauge concurrentGauge = registryImpl != null
+                ? registryImpl.getConcurrentGauge(metricID)
+                : registry.getConcurrentGauges().get(metricID);
+        if (concurrentGauge == null) {
+            throw new IllegalStateException(
+                    "No concurrent gauge with metricID [" + metricID + "] found in registry [" + registry + "]");
+        }
+        if (registryImpl != null) {
+            registryImpl.bindMetric(MetricType.CONCURRENT_GAUGE, beanClass, element, metricID, concurrentGauge);
+        }
+        return concurrentGauge;
+    }
 }
@@ -31,10 +31,11 @@ import javax.interceptor.InvocationContext;
 import org.eclipse.microprofile.metrics.Counter;
 import org.eclipse.microprofile.metrics.MetricID;
 import org.eclipse.microprofile.metrics.MetricRegistry;
-import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.MetricType;
 import org.eclipse.microprofile.metrics.annotation.Counted;
 import org.jboss.logging.Logger;
 
+import io.smallrye.metrics.MetricsRegistryImpl;
 import io.smallrye.metrics.elementdesc.adapter.BeanInfoAdapter;
 import io.smallrye.metrics.elementdesc.adapter.cdi.CDIBeanInfoAdapter;
 import io.smallrye.metrics.elementdesc.adapter.cdi.CDIMemberInfoAdapter;
@@ -51,12 +52,16 @@ public class CountedInterceptor {
 
     private final MetricRegistry registry;
 
+    // the injected registry if it is a MetricsRegistryImpl, which lets countedCallable skip the resolution
+    private final MetricsRegistryImpl registryImpl;
+
     private final MetricResolver resolver;
 
     @Inject
     CountedInterceptor(@Intercepted Bean<?> bean, MetricRegistry registry) {
         this.bean = bean;
         this.registry = registry;
+        this.registryImpl = registry instanceof MetricsRegistryImpl ? (MetricsRegistryImpl) registry : null;
         this.resolver = new MetricResolver();
     }
 
@@ -77,21 +82,32 @@ public class CountedInterceptor {
 
     private <E extends Member & AnnotatedElement> Object countedCallable(InvocationContext context, E element)
             throws Exception {
+        Class<?> beanClass = bean != null ? bean.getBeanClass() : element.getDeclaringClass();
+        Counter counter = registryImpl == null ? null
+                : registryImpl.getBoundMetric(MetricType.COUNTER, beanClass, element);
+        if (counter == null) {
+            counter = resolveCounter(beanClass, element);
+        }
+        log.tracef("Increment counter [member: %s]", element);
+        counter.inc();
+        return context.proceed();
+    }
+
+    private <E extends Member & AnnotatedElement> Counter resolveCounter(Class<?> beanClass, E element) {
         BeanInfoAdapter<Class<?>> beanInfoAdapter = new CDIBeanInfoAdapter();
         CDIMemberInfoAdapter memberInfoAdapter = new CDIMemberInfoAdapter();
-        MetricResolver.Of<Counted> counted = resolver.counted(
-                bean != null ? beanInfoAdapter.convert(bean.getBeanClass())
-                        : beanInfoAdapter.convert(element.getDeclaringClass()),
+        MetricResolver.Of<Counted> resolved = resolver.counted(beanInfoAdapter.convert(beanClass),
                 memberInfoAdapter.convert(element));
-        String name = counted.metricName();
-        Tag[] tags = counted.tags();
-        MetricID metricID = new MetricID(name, tags);
-        Counter counter = registry.getCounters().get(metricID);
+        MetricID metricID = new MetricID(resolved.metricName(), resolved.tags());
+        Counter counter = registryImpl != null ? registryImpl.getCounter(metricID)
+                : registry.getCounters().get(metricID);
         if (counter == null) {
-            throw new IllegalStateException("No counter with metricID [" + metricID + "] found in registry [" + registry + "]");
+            throw new IllegalStateException(
+                    "No counter with metricID [" + metricID + "] found in registry [" + registry + "]");
         }
-        log.tracef("Increment counter [metricName: %s]", name);
-        counter.inc();
-        return context.proceed();
+        if (registryImpl != null) {
+            registryImpl.bindMetric(MetricType.COUNTER, beanClass, element, metricID, counter);
+        }
+        return counter;
     }
 }
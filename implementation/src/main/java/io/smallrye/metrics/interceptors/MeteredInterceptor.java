@@ -33,9 +33,10 @@ import javax.interceptor.InvocationContext;
 import org.eclipse.microprofile.metrics.Meter;
 import org.eclipse.microprofile.metrics.MetricID;
 import org.eclipse.microprofile.metrics.MetricRegistry;
-import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.MetricType;
 import org.eclipse.microprofile.metrics.annotation.Metered;
 
+import io.smallrye.metrics.MetricsRegistryImpl;
 import io.smallrye.metrics.elementdesc.adapter.BeanInfoAdapter;
 import io.smallrye.metrics.elementdesc.adapter.cdi.CDIBeanInfoAdapter;
 import io.smallrye.metrics.elementdesc.adapter.cdi.CDIMemberInfoAdapter;
@@ -50,12 +51,16 @@ public class MeteredInterceptor {
 
     private final MetricRegistry registry;
 
+    // the injected registry if it is a MetricsRegistryImpl, which lets meteredCallable skip the resolution
+    private final MetricsRegistryImpl registryImpl;
+
     private final MetricResolver resolver;
 
     @Inject
     MeteredInterceptor(@Intercepted Bean<?> bean, MetricRegistry registry) {
         this.bean = bean;
         this.registry = registry;
+        this.registryImpl = registry instanceof MetricsRegistryImpl ? (MetricsRegistryImpl) registry : null;
         this.resolver = new MetricResolver();
     }
 
@@ -76,21 +81,32 @@ public class MeteredInterceptor {
 
     private <E extends Member & AnnotatedElement> Object meteredCallable(InvocationContext context, E element)
             throws Exception {
-        BeanInfoAdapter<Class<?>> beanInfoAdapter = new CDIBeanInfoAdapter();
-        CDIMemberInfoAdapter memberInfoAdapter = new CDIMemberInfoAdapter();
-        MetricResolver.Of<Metered> meterResolver = resolver.metered(
-                bean != null ? beanInfoAdapter.convert(bean.getBeanClass())
-                        : beanInfoAdapter.convert(element.getDeclaringClass()),
-                memberInfoAdapter.convert(element));
-        String name = meterResolver.metricName();
-        Tag[] tags = meterResolver.tags();
-        MetricID metricID = new MetricID(name, tags);
-        Meter meter = (Meter) registry.getMetrics().get(metricID);
+        Class<?> beanClass = bean != null ? bean.getBeanClass() : element.getDeclaringClass();
+        Meter meter = registryImpl == null ? null
+                : registryImpl.getBoundMetric(MetricType.METERED, beanClass, element);
         if (meter == null) {
-            throw new IllegalStateException("No meter with metricID [" + metricID + "] found in registry [" + registry + "]");
+            meter = resolveMeter(beanClass, element);
         }
 
         meter.mark();
         return context.proceed();
     }
+
+    private <E extends Member & AnnotatedElement> Meter resolveMeter(Class<?> beanClass, E element) {
+        BeanInfoAdapter<Class<?>> beanInfoAdapter = new CDIBeanInfoAdapter();
+        CDIMemberInfoAdapter memberInfoAdapter = new CDIMemberInfoAdapter();
+        MetricResolver.Of<Metered> resolved = resolver.metered(beanInfoAdapter.convert(beanClass),
+                memberInfoAdapter.convert(element));
+        MetricID metricID = new MetricID(resolved.metricName(), resolved.tags());
+        Meter meter = registryImpl != null ? registryImpl.getMeter(metricID)
+                : (Meter) registry.getMetrics().get(metricID);
+        if (meter == null) {
+            throw new IllegalStateException(
+                    "No meter with metricID [" + metricID + "] found in registry [" + registry + "]");
+        }
+        if (registryImpl != null) {
+            registryImpl.bindMetric(MetricType.METERED, beanClass, element, metricID, meter);
+        }
+        return meter;
+    }
 }
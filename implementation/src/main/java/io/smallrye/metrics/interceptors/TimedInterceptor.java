@@ -32,12 +32,12 @@ import javax.interceptor.InvocationContext;
 
 import org.eclipse.microprofile.metrics.MetricID;
 import org.eclipse.microprofile.metrics.MetricRegistry;
-import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.MetricType;
 import org.eclipse.microprofile.metrics.Timer;
 import org.eclipse.microprofile.metrics.annotation.Timed;
 
+import io.smallrye.metrics.MetricsRegistryImpl;
 import io.smallrye.metrics.elementdesc.adapter.BeanInfoAdapter;
-import io.smallrye.metrics.elementdesc.adapter.MemberInfoAdapter;
 import io.smallrye.metrics.elementdesc.adapter.cdi.CDIBeanInfoAdapter;
 import io.smallrye.metrics.elementdesc.adapter.cdi.CDIMemberInfoAdapter;
 
@@ -51,12 +51,16 @@ public class TimedInterceptor {
 
     private final MetricRegistry registry;
 
+    // the injected registry if it is a MetricsRegistryImpl, which lets timedCallable skip the resolution
+    private final MetricsRegistryImpl registryImpl;
+
     private final MetricResolver resolver;
 
     @Inject
     TimedInterceptor(@Intercepted Bean<?> bean, MetricRegistry registry) {
         this.bean = bean;
         this.registry = registry;
+        this.registryImpl = registry instanceof MetricsRegistryImpl ? (MetricsRegistryImpl) registry : null;
         this.resolver = new MetricResolver();
     }
 
@@ -76,18 +80,11 @@ public class TimedInterceptor {
     }
 
     private <E extends Member & AnnotatedElement> Object timedCallable(InvocationContext context, E element) throws Exception {
-        BeanInfoAdapter<Class<?>> beanInfoAdapter = new CDIBeanInfoAdapter();
-        MemberInfoAdapter<Member> memberInfoAdapter = new CDIMemberInfoAdapter();
-        MetricResolver.Of<Timed> meterResolver = resolver.timed(
-                bean != null ? beanInfoAdapter.convert(bean.getBeanClass())
-                        : beanInfoAdapter.convert(element.getDeclaringClass()),
-                memberInfoAdapter.convert(element));
-        String name = meterResolver.metricName();
-        Tag[] tags = meterResolver.tags();
-        MetricID metricID = new MetricID(name, tags);
-        Timer timer = (Timer) registry.getMetrics().get(metricID);
+        Class<?> beanClass = bean != null ? bean.getBeanClass() : element.getDeclaringClass();
+        Timer timer = registryImpl == null ? null
+                : registryImpl.getBoundMetric(MetricType.TIMER, beanClass, element);
         if (timer == null) {
-            throw new IllegalStateException("No timer with metricID [" + metricID + "] found in registry [" + registry + "]");
+            timer = resolveTimer(beanClass, element);
         }
 
         Timer.Context time = timer.time();
@@ -97,4 +94,22 @@ public class TimedInterceptor {
             time.stop();
         }
     }
+
+    private <E extends Member & AnnotatedElement> Timer resolveTimer(Class<?> beanClass, E element) {
+        BeanInfoAdapter<Class<?>> beanInfoAdapter = new CDIBeanInfoAdapter();
+        CDIMemberInfoAdapter memberInfoAdapter = new CDIMemberInfoAdapter();
+        MetricResolver.Of<Timed> resolved = resolver.timed(beanInfoAdapter.convert(beanClass),
+                memberInfoAdapter.convert(element));
+        MetricID metricID = new MetricID(resolved.metricName(), resolved.tags());
+        Timer timer = registryImpl != null ? registryImpl.getTimer(metricID)
+                : (Timer) registry.getMetrics().get(metricID);
+        if (timer == null) {
+            throw new IllegalStateException(
+                    "No timer with metricID [" + metricID + "] found in registry [" + registry + "]");
+        }
+        if (registryImpl != null) {
+            registryImpl.bindMetric(MetricType.TIMER, beanClass, element, metricID, timer);
+        }
+        return timer;
+    }
 }
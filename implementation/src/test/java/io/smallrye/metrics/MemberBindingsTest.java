@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.metrics;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.smallrye.metrics.app.CounterImpl;
+
+public class MemberBindingsTest {
+
+    private MetricsRegistryImpl registry;
+
+    private Method member;
+
+    @Before
+    public void setUp() throws NoSuchMethodException {
+        registry = new MetricsRegistryImpl();
+        member = MemberBindingsTest.class.getDeclaredMethod("setUp");
+    }
+
+    @Test
+    public void boundMetricIsReturned() {
+        Counter counter = registry.counter("c1");
+        registry.bindMetric(MetricType.COUNTER, MemberBindingsTest.class, member, new MetricID("c1"), counter);
+
+        assertSame(counter, registry.getBoundMetric(MetricType.COUNTER, MemberBindingsTest.class, member));
+        // other metric types and bean classes must not see the binding
+        assertNull(registry.getBoundMetric(MetricType.TIMER, MemberBindingsTest.class, member));
+        assertNull(registry.getBoundMetric(MetricType.COUNTER, Object.class, member));
+    }
+
+    @Test
+    public void bindingIsDroppedWhenMetricIsRemoved() {
+        Counter counter = registry.counter("c1");
+        Timer timer = registry.timer("t1");
+        registry.bindMetric(MetricType.COUNTER, MemberBindingsTest.class, member, new MetricID("c1"), counter);
+        registry.bindMetric(MetricType.TIMER, MemberBindingsTest.class, member, new MetricID("t1"), timer);
+
+        registry.remove(new MetricID("c1"));
+        assertNull(registry.getBoundMetric(MetricType.COUNTER, MemberBindingsTest.class, member));
+        assertSame(timer, registry.getBoundMetric(MetricType.TIMER, MemberBindingsTest.class, member));
+
+        registry.remove("t1");
+        assertNull(registry.getBoundMetric(MetricType.TIMER, MemberBindingsTest.class, member));
+    }
+
+    @Test
+    public void bindingToAnotherMetricSurvivesRemovalOfThePreviousOne() {
+        Counter first = registry.counter("c1");
+        Counter second = registry.counter("c2");
+        registry.bindMetric(MetricType.COUNTER, MemberBindingsTest.class, member, new MetricID("c1"), first);
+        registry.bindMetric(MetricType.COUNTER, MemberBindingsTest.class, member, new MetricID("c2"), second);
+
+        registry.remove("c1");
+        assertSame(second, registry.getBoundMetric(MetricType.COUNTER, MemberBindingsTest.class, member));
+
+        registry.remove("c2");
+        assertNull(registry.getBoundMetric(MetricType.COUNTER, MemberBindingsTest.class, member));
+    }
+
+    @Test
+    public void metricThatIsNotRegisteredIsNotBound() {
+        Counter counter = registry.counter("c1");
+        registry.remove("c1");
+        registry.bindMetric(MetricType.COUNTER, MemberBindingsTest.class, member, new MetricID("c1"), counter);
+
+        assertNull(registry.getBoundMetric(MetricType.COUNTER, MemberBindingsTest.class, member));
+    }
+
+    @Test
+    public void equalMetricsDoNotUnbindEachOther() throws NoSuchMethodException {
+        Method other = MemberBindingsTest.class.getDeclaredMethod("equalMetricsDoNotUnbindEachOther");
+        Counter first = new EqualCounter();
+        Counter second = new EqualCounter();
+        MemberBindings bindings = new MemberBindings();
+        bindings.bind(MetricType.COUNTER, MemberBindingsTest.class, member, first);
+        bindings.bind(MetricType.COUNTER, MemberBindingsTest.class, other, second);
+
+        bindings.unbind(first);
+        assertNull(bindings.get(MetricType.COUNTER, MemberBindingsTest.class, member));
+        assertSame(second, bindings.get(MetricType.COUNTER, MemberBindingsTest.class, other));
+    }
+
+    @Test
+    public void clearDropsAllBindings() {
+        Counter counter = registry.counter("c1");
+        registry.bindMetric(MetricType.COUNTER, MemberBindingsTest.class, member, new MetricID("c1"), counter);
+
+        registry.clearMemberBindings();
+        assertNull(registry.getBoundMetric(MetricType.COUNTER, MemberBindingsTest.class, member));
+    }
+
+    // all instances are equal to each other, like metrics that define equality by their value
+    private static class EqualCounter extends CounterImpl {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EqualCounter;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+}
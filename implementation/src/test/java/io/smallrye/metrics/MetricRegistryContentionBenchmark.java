@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.junit.Test;
+
+/**
+ * Measures how the throughput of obtaining metrics from the registry scales with the number of threads.
+ * Not part of the regular test run (surefire only picks up *Test classes), run it explicitly with
+ * {@code mvn surefire:test -Dtest=MetricRegistryContentionBenchmark}.
+ *
+ * Two scenarios are measured:
+ * <ul>
+ * <li>get-existing: every call of registry.counter(name, tags) hits a metric that already exists,
+ * which is what dynamic tags on a hot path look like after warm-up</li>
+ * <li>create-new: every call registers a new series, so registrations of the same name contend with each other</li>
+ * </ul>
+ */
+public class MetricRegistryContentionBenchmark {
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16 };
+    private static final int SERIES = 100;
+    private static final long DURATION_MILLIS = Long.getLong("benchmark.durationMillis", 1000);
+
+    @Test
+    public void getExisting() throws InterruptedException {
+        System.out.println("registry.counter(name, tags) on existing metrics:");
+        for (int threads : THREAD_COUNTS) {
+            MetricRegistry registry = new MetricsRegistryImpl();
+            Tag[] tags = new Tag[SERIES];
+            for (int i = 0; i < SERIES; i++) {
+                tags[i] = new Tag("endpoint", "e" + i);
+                registry.counter("requests", tags[i]);
+            }
+            long ops = run(threads, (thread, i) -> registry.counter("requests", tags[(int) (i % SERIES)]).inc());
+            report(threads, ops);
+
+            long total = registry.getCounters().values().stream().mapToLong(Counter::getCount).sum();
+            assertEquals(ops, total);
+        }
+    }
+
+    @Test
+    public void createNew() throws InterruptedException {
+        System.out.println("registry.counter(name, tags) creating a new series on every call:");
+        for (int threads : THREAD_COUNTS) {
+            MetricRegistry registry = new MetricsRegistryImpl();
+            long ops = run(threads, (thread, i) -> registry.counter("requests",
+                    new Tag("thread", String.valueOf(thread)), new Tag("i", String.valueOf(i))).inc());
+            report(threads, ops);
+
+            assertEquals(ops, registry.getCounters().size());
+        }
+    }
+
+    private long run(int threads, Operation operation) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder ops = new LongAdder();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+                long i = 0;
+                while (System.nanoTime() < deadline) {
+                    operation.perform(thread, i++);
+                }
+                ops.add(i);
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(DURATION_MILLIS * 10, TimeUnit.MILLISECONDS);
+        return ops.sum();
+    }
+
+    private void report(int threads, long ops) {
+        System.out.printf("  %2d threads: %,12d ops/s%n", threads, ops * 1000 / DURATION_MILLIS);
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void perform(int thread, long iteration);
+    }
+}
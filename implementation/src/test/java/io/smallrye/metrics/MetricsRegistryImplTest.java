@@ -0,0 +1,304 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.Test;
+
+import io.smallrye.metrics.app.CounterImpl;
+
+public class MetricsRegistryImplTest {
+
+    private final MetricsRegistryImpl registry = new MetricsRegistryImpl();
+
+    @Test
+    public void pointLookups() {
+        Counter counter = registry.counter("c1", new Tag("a", "b"));
+        Timer timer = registry.timer("t1");
+        Gauge<Long> gauge = () -> 42L;
+        registry.register(Metadata.builder().withName("g1").withType(MetricType.GAUGE).build(), gauge);
+
+        assertSame(counter, registry.getCounter(new MetricID("c1", new Tag("a", "b"))));
+        assertSame(counter, registry.getMetric(new MetricID("c1", new Tag("a", "b"))));
+        assertSame(timer, registry.getTimer(new MetricID("t1")));
+        assertSame(gauge, registry.getGauge(new MetricID("g1")));
+
+        // wrong tags, wrong type, or no such metric at all
+        assertNull(registry.getCounter(new MetricID("c1")));
+        assertNull(registry.getMeter(new MetricID("t1")));
+        assertNull(registry.getHistogram(new MetricID("c1", new Tag("a", "b"))));
+        assertNull(registry.getConcurrentGauge(new MetricID("nothing")));
+    }
+
+    @Test
+    public void metadataLookup() {
+        registry.counter("c1", new Tag("a", "b"));
+        registry.counter("c1", new Tag("a", "c"));
+
+        assertSame(MetricType.COUNTER, registry.getMetadata("c1").getTypeRaw());
+
+        registry.remove(new MetricID("c1", new Tag("a", "b")));
+        assertSame(MetricType.COUNTER, registry.getMetadata("c1").getTypeRaw());
+
+        registry.remove(new MetricID("c1", new Tag("a", "c")));
+        assertNull(registry.getMetadata("c1"));
+    }
+
+    @Test
+    public void metricIDsByName() {
+        Counter c1 = registry.counter("c1", new Tag("a", "b"));
+        registry.counter("c1", new Tag("a", "c"));
+        registry.timer("t1");
+
+        assertEquals(new HashSet<>(Arrays.asList(new MetricID("c1", new Tag("a", "b")), new MetricID("c1", new Tag("a", "c")))),
+                registry.getMetricIDs("c1"));
+        assertSame(c1, registry.getMetrics("c1").get(new MetricID("c1", new Tag("a", "b"))));
+        assertEquals(2, registry.getMetrics("c1").size());
+        assertTrue(registry.getMetricIDs("nothing").isEmpty());
+        assertTrue(registry.getMetrics("nothing").isEmpty());
+
+        registry.remove(new MetricID("c1", new Tag("a", "b")));
+        assertEquals(1, registry.getMetricIDs("c1").size());
+        assertEquals(new HashSet<>(Arrays.asList("c1", "t1")), registry.getNames());
+
+        registry.removeMatching((id, metric) -> id.getName().equals("c1"));
+        assertTrue(registry.getMetricIDs("c1").isEmpty());
+        assertNull(registry.getMetadata("c1"));
+
+        assertTrue(registry.remove("t1"));
+        assertFalse(registry.remove("t1"));
+        assertTrue(registry.getNames().isEmpty());
+    }
+
+    @Test
+    public void typedGettersOnlySeeTheirType() {
+        for (int i = 0; i < 100; i++) {
+            registry.counter("c" + i);
+        }
+        Timer timer = registry.timer("t1");
+        registry.meter("m1");
+
+        assertEquals(100, registry.getCounters().size());
+        assertEquals(1, registry.getTimers().size());
+        assertSame(timer, registry.getTimers().get(new MetricID("t1")));
+        assertEquals(1, registry.getMeters().size());
+        assertTrue(registry.getHistograms().isEmpty());
+        assertEquals(1, registry.getCounters((id, metric) -> id.getName().equals("c42")).size());
+
+        registry.remove("t1");
+        assertTrue(registry.getTimers().isEmpty());
+        assertNull(registry.getTimer(new MetricID("t1")));
+
+        // a metric registered again under the same MetricID replaces the previous instance in its partition
+        Counter replacement = new CounterImpl();
+        registry.register(Metadata.builder().withName("c0").withType(MetricType.COUNTER).reusable().build(), replacement);
+        assertSame(replacement, registry.getCounters().get(new MetricID("c0")));
+        assertEquals(100, registry.getCounters().size());
+    }
+
+    @Test
+    public void sortedSnapshots() {
+        registry.counter("b");
+        registry.counter("a", new Tag("x", "2"));
+        registry.counter("a", new Tag("x", "1"));
+        registry.timer("c");
+
+        SortedSet<String> names = registry.getNames();
+        SortedSet<MetricID> metricIDs = registry.getMetricIDs();
+        SortedMap<MetricID, Counter> counters = registry.getCounters();
+        assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(names.toArray()));
+        assertEquals(Arrays.asList(new MetricID("a", new Tag("x", "1")), new MetricID("a", new Tag("x", "2")),
+                new MetricID("b"), new MetricID("c")), Arrays.asList(metricIDs.toArray()));
+        assertEquals(new MetricID("a", new Tag("x", "1")), counters.firstKey());
+        assertEquals(3, counters.size());
+
+        // the results are snapshots, they don't follow later changes of the registry
+        registry.remove("a");
+        registry.counter("0");
+        assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(names.toArray()));
+        assertEquals(new MetricID("a", new Tag("x", "1")), metricIDs.first());
+        assertEquals(3, counters.size());
+
+        assertEquals(Arrays.asList("0", "b", "c"), Arrays.asList(registry.getNames().toArray()));
+        assertEquals(new MetricID("0"), registry.getMetricIDs().first());
+        assertEquals(Arrays.asList(new MetricID("0"), new MetricID("b")),
+                Arrays.asList(registry.getCounters().keySet().toArray()));
+    }
+
+    @Test
+    public void filteredResultsAreSnapshotsToo() {
+        registry.counter("a");
+        SortedMap<MetricID, Counter> counters = registry.getCounters((id, metric) -> true);
+        registry.counter("b");
+
+        assertEquals(1, counters.size());
+        assertEquals(2, registry.getCounters((id, metric) -> true).size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sortedSnapshotsAreUnmodifiable() {
+        registry.counter("a");
+        registry.getCounters().remove(new MetricID("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void filteredSnapshotsAreUnmodifiable() {
+        registry.counter("a");
+        registry.getCounters((id, metric) -> true).remove(new MetricID("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void metricsAreUnmodifiable() {
+        registry.counter("a");
+        registry.getMetrics().remove(new MetricID("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void metadataIsUnmodifiable() {
+        registry.counter("a");
+        registry.getMetadata().remove("a");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void namesAreUnmodifiable() {
+        registry.counter("a");
+        registry.getNames().remove("a");
+    }
+
+    @Test
+    public void removalListenersSeeEveryRemovedMetric() {
+        List<MetricID> removed = new ArrayList<>();
+        registry.addRemovalListener(removed::add);
+        registry.counter("c1", new Tag("a", "b"));
+        registry.counter("c1", new Tag("a", "c"));
+        registry.counter("c2");
+
+        registry.remove(new MetricID("c2"));
+        registry.remove(new MetricID("nothing"));
+        registry.remove("c1");
+
+        assertEquals(Arrays.asList(new MetricID("c2")), removed.subList(0, 1));
+        assertEquals(new HashSet<>(Arrays.asList(new MetricID("c1", new Tag("a", "b")),
+                new MetricID("c1", new Tag("a", "c")))), new HashSet<>(removed.subList(1, removed.size())));
+        assertEquals(3, removed.size());
+    }
+
+    @Test
+    public void snapshotIsRepublishedOnlyOnChange() {
+        Counter counter = registry.counter("c1");
+        RegistrySnapshot snapshot = registry.getSnapshot();
+        assertSame(counter, snapshot.getMetrics().get(new MetricID("c1")));
+        assertSame(MetricType.COUNTER, snapshot.getMetadata().get("c1").getTypeRaw());
+
+        // no change, same snapshot; getting an existing metric is not a change either
+        registry.counter("c1");
+        assertSame(snapshot, registry.getSnapshot());
+        assertSame(snapshot.getMetrics(), registry.getMetrics());
+        assertSame(snapshot.getMetadata(), registry.getMetadata());
+
+        registry.counter("c2");
+        RegistrySnapshot next = registry.getSnapshot();
+        assertNotSame(snapshot, next);
+        assertTrue(next.getVersion() > snapshot.getVersion());
+        assertEquals(2, next.getMetrics().size());
+        // the previous snapshot is unaffected
+        assertEquals(1, snapshot.getMetrics().size());
+
+        registry.remove("c1");
+        assertFalse(registry.getMetadata().containsKey("c1"));
+        assertEquals(1, registry.getMetrics().size());
+    }
+
+    @Test
+    public void snapshotsAreConsistentWhileMetricsAreRemoved() throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                registry.counter("c" + (i % 10));
+                registry.remove("c" + ((i + 5) % 10));
+            }
+            done.set(true);
+        });
+        writer.start();
+        try {
+            while (!done.get()) {
+                RegistrySnapshot snapshot = registry.getSnapshot();
+                for (MetricID metricID : snapshot.getMetrics().keySet()) {
+                    assertTrue("No metadata for " + metricID, snapshot.getMetadata().containsKey(metricID.getName()));
+                }
+            }
+        } finally {
+            writer.join();
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void snapshotsAreTakenWhileRegistrationsNeverStop() throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final String prefix = "t" + t + "_";
+            Thread writer = new Thread(() -> {
+                for (long i = 0; !done.get(); i++) {
+                    registry.counter(prefix + (i % 1000), new Tag("i", Long.toString(i)));
+                    if (i % 1000 == 999) {
+                        for (int j = 0; j < 1000; j++) {
+                            registry.remove(prefix + j);
+                        }
+                    }
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        try {
+            for (int i = 0; i < 200; i++) {
+                RegistrySnapshot snapshot = registry.getSnapshot();
+                for (MetricID metricID : snapshot.getMetrics().keySet()) {
+                    assertTrue("No metadata for " + metricID, snapshot.getMetadata().containsKey(metricID.getName()));
+                }
+            }
+        } finally {
+            done.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.metrics;
+
+import static io.smallrye.metrics.exporters.OpenMetricsExporter.SMALLRYE_METRICS_USE_PREFIX_FOR_SCOPE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import org.eclipse.microprofile.metrics.MetricFilter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+public class MetricsRequestHandlerTest {
+
+    @After
+    public void cleanupApplicationMetrics() {
+        MetricRegistries.get(MetricRegistry.Type.APPLICATION).removeMatching(MetricFilter.ALL);
+    }
+
+    @Test
+    public void configIsOnlyReadAgainAfterRefresh() throws IOException {
+        MetricsRequestHandler handler = new MetricsRequestHandler();
+        MetricRegistries.get(MetricRegistry.Type.APPLICATION).counter("refreshed_counter").inc();
+
+        String previousConfigValue = System.getProperty(SMALLRYE_METRICS_USE_PREFIX_FOR_SCOPE);
+        try {
+            assertTrue(scrape(handler).contains("application_refreshed_counter_total 1.0"));
+
+            System.setProperty(SMALLRYE_METRICS_USE_PREFIX_FOR_SCOPE, Boolean.FALSE.toString());
+            assertTrue(scrape(handler).contains("application_refreshed_counter_total 1.0"));
+
+            handler.refreshConfig();
+            assertTrue(scrape(handler).contains("refreshed_counter_total{microprofile_scope=\"application\"} 1.0"));
+        } finally {
+            if (previousConfigValue != null) {
+                System.setProperty(SMALLRYE_METRICS_USE_PREFIX_FOR_SCOPE, previousConfigValue);
+            } else {
+                System.clearProperty(SMALLRYE_METRICS_USE_PREFIX_FOR_SCOPE);
+            }
+        }
+    }
+
+    private String scrape(MetricsRequestHandler handler) throws IOException {
+        StringBuilder body = new StringBuilder();
+        handler.handleRequest("/metrics/application", "GET", Stream.of("text/plain"), (status, message, headers) -> {
+            assertEquals(200, status);
+            body.append(message);
+        });
+        return body.toString();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.metrics;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.Test;
+
+import io.smallrye.metrics.app.DDSketchReservoir;
+import io.smallrye.metrics.app.DDSketchSnapshot;
+import io.smallrye.metrics.app.ExponentiallyDecayingReservoir;
+import io.smallrye.metrics.app.FixedBucketReservoir;
+import io.smallrye.metrics.app.LogLinearReservoir;
+import io.smallrye.metrics.app.SlidingTimeWindowReservoir;
+import io.smallrye.metrics.app.SlidingWindowReservoir;
+
+public class ReservoirFactoryTest {
+
+    @Test
+    public void defaultReservoir() {
+        ReservoirFactory factory = new ReservoirFactory(new HashMap<>());
+        assertTrue(factory.create(MetricRegistry.Type.APPLICATION, "t") instanceof ExponentiallyDecayingReservoir);
+    }
+
+    @Test
+    public void patternsSelectTheReservoir() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("smallrye.metrics.reservoir.slo_.*", "hdr,digits=3,highest=3600000000000");
+        properties.put("smallrye.metrics.reservoir.slo_checkout", "sketch, accuracy=0.02");
+        properties.put("smallrye.metrics.reservoir.application:.*", "window,seconds=30");
+        properties.put("smallrye.metrics.reservoir.vendor:.*", "count-window,size=100");
+        properties.put("smallrye.metrics.reservoir.legacy", "decaying,size=100,alpha=0.01");
+        properties.put("smallrye.metrics.reservoir.base:requests", "buckets,boundaries=10;100; 1000");
+        properties.put("some.other.property", "hdr");
+        ReservoirFactory factory = new ReservoirFactory(properties);
+
+        assertTrue(factory.create(MetricRegistry.Type.BASE, "slo_login") instanceof LogLinearReservoir);
+        // the longer pattern wins
+        assertTrue(factory.create(MetricRegistry.Type.BASE, "slo_checkout") instanceof DDSketchReservoir);
+        // patterns with a scope win
+        assertTrue(factory.create(MetricRegistry.Type.APPLICATION, "slo_login") instanceof SlidingTimeWindowReservoir);
+        assertTrue(factory.create(MetricRegistry.Type.VENDOR, "legacy") instanceof SlidingWindowReservoir);
+        assertTrue(factory.create(MetricRegistry.Type.BASE, "legacy") instanceof ExponentiallyDecayingReservoir);
+        assertTrue(factory.create(MetricRegistry.Type.BASE, "requests") instanceof FixedBucketReservoir);
+        // the pattern has to match the whole name
+        assertTrue(factory.create(MetricRegistry.Type.BASE, "legacy_2") instanceof ExponentiallyDecayingReservoir);
+        // no scope known, only patterns without a scope apply
+        assertTrue(factory.create(null, "other") instanceof ExponentiallyDecayingReservoir);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownType() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("smallrye.metrics.reservoir.t", "uniform");
+        new ReservoirFactory(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownParameter() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("smallrye.metrics.reservoir.t", "hdr,size=10");
+        new ReservoirFactory(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bucketsRequireBoundaries() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("smallrye.metrics.reservoir.t", "buckets");
+        new ReservoirFactory(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidParameterValue() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("smallrye.metrics.reservoir.t", "sketch,accuracy=2");
+        new ReservoirFactory(properties);
+    }
+
+    @Test
+    public void registryUsesConfiguredReservoirs() {
+        String property = ReservoirFactory.SMALLRYE_METRICS_RESERVOIR_PREFIX + "sketched_.*";
+        System.setProperty(property, "sketch");
+        try {
+            MetricsRegistryImpl registry = new MetricsRegistryImpl(MetricRegistry.Type.APPLICATION);
+            assertTrue(registry.timer("sketched_timer").getSnapshot() instanceof DDSketchSnapshot);
+            assertTrue(registry.histogram("sketched_histogram").getSnapshot() instanceof DDSketchSnapshot);
+            assertFalse(registry.timer("other_timer").getSnapshot() instanceof DDSketchSnapshot);
+        } finally {
+            System.clearProperty(property);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.microprofile.metrics.MetricFilter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResponseCompressionTest {
+
+    private final MetricsRequestHandler handler = new MetricsRequestHandler(Deflater.DEFAULT_COMPRESSION, 1024);
+
+    @Before
+    public void registerMetrics() {
+        MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        for (int i = 0; i < 100; i++) {
+            registry.counter("compressed_counter_" + i).inc(i);
+        }
+    }
+
+    @After
+    public void cleanupApplicationMetrics() {
+        MetricRegistries.get(MetricRegistry.Type.APPLICATION).removeMatching(MetricFilter.ALL);
+    }
+
+    @Test
+    public void negotiateEncoding() {
+        assertEquals(Optional.empty(), handler.getBestMatchingEncoding(null));
+        assertEquals(Optional.empty(), handler.getBestMatchingEncoding(Stream.of("identity")));
+        assertEquals(Optional.of("gzip"), handler.getBestMatchingEncoding(Stream.of("gzip, deflate, br")));
+        assertEquals(Optional.of("gzip"), handler.getBestMatchingEncoding(Stream.of("x-gzip")));
+        assertEquals(Optional.of("gzip"), handler.getBestMatchingEncoding(Stream.of("*")));
+        assertEquals(Optional.of("deflate"), handler.getBestMatchingEncoding(Stream.of("gzip;q=0.5", "deflate")));
+        assertEquals(Optional.of("deflate"), handler.getBestMatchingEncoding(Stream.of("gzip;q=0, *")));
+        assertEquals(Optional.empty(), handler.getBestMatchingEncoding(Stream.of("gzip;q=0, deflate;q=0")));
+        assertEquals(Optional.empty(), handler.getBestMatchingEncoding(Stream.of("br, *;q=0")));
+    }
+
+    @Test
+    public void gzipResponse() throws IOException {
+        RecordingResponder plain = request(null);
+        RecordingResponder gzip = request(Stream.of("gzip, deflate"));
+
+        assertEquals(200, gzip.status);
+        assertEquals("gzip", gzip.headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", gzip.headers.get("Vary"));
+        assertTrue(gzip.body.size() < plain.body.size());
+        assertEquals(plain.bodyAsString(), decode(new GZIPInputStream(gzip.bodyAsStream())));
+    }
+
+    @Test
+    public void deflateResponse() throws IOException {
+        RecordingResponder plain = request(null);
+        RecordingResponder deflate = request(Stream.of("deflate"));
+
+        assertEquals(200, deflate.status);
+        assertEquals("deflate", deflate.headers.get("Content-Encoding"));
+        assertEquals(plain.bodyAsString(), decode(new InflaterInputStream(deflate.bodyAsStream())));
+    }
+
+    @Test
+    public void smallResponseIsNotCompressed() throws IOException {
+        RecordingResponder plain = request(null);
+        RecordingResponder small = new RecordingResponder();
+        new MetricsRequestHandler(Deflater.BEST_SPEED, plain.body.size() + 1)
+                .handleRequest("/metrics/application", "/metrics", "GET", null, Stream.of("gzip"), small);
+
+        assertEquals(200, small.status);
+        assertFalse(small.headers.containsKey("Content-Encoding"));
+        assertEquals("Accept-Encoding", small.headers.get("Vary"));
+        assertEquals(plain.bodyAsString(), small.bodyAsString());
+    }
+
+    @Test
+    public void noCompressionWithoutAcceptEncoding() throws IOException {
+        // the request had no Accept-Encoding header, but the response would differ if it had one
+        RecordingResponder plain = request(Stream.empty());
+
+        assertEquals(200, plain.status);
+        assertFalse(plain.headers.containsKey("Content-Encoding"));
+        assertEquals("Accept-Encoding", plain.headers.get("Vary"));
+        assertTrue(plain.bodyAsString().contains("application_compressed_counter_99_total 99.0"));
+    }
+
+    @Test
+    public void noVaryHeaderWithoutNegotiation() throws IOException {
+        RecordingResponder withoutEncodings = request(null);
+        assertEquals(200, withoutEncodings.status);
+        assertFalse(withoutEncodings.headers.containsKey("Content-Encoding"));
+        assertFalse(withoutEncodings.headers.containsKey("Vary"));
+
+        // the overload without Accept-Encoding headers never compresses
+        RecordingResponder overload = new RecordingResponder();
+        handler.handleRequest("/metrics/application", "/metrics", "GET", null, overload);
+        assertEquals(200, overload.status);
+        assertFalse(overload.headers.containsKey("Content-Encoding"));
+        assertFalse(overload.headers.containsKey("Vary"));
+        assertEquals(withoutEncodings.bodyAsString(), overload.bodyAsString());
+    }
+
+    @Test
+    public void noVaryHeaderWhenCompressionIsDisabled() throws IOException {
+        RecordingResponder responder = new RecordingResponder();
+        new MetricsRequestHandler(Deflater.BEST_SPEED, -1)
+                .handleRequest("/metrics/application", "/metrics", "GET", null, Stream.of("gzip"), responder);
+
+        assertEquals(200, responder.status);
+        assertFalse(responder.headers.containsKey("Content-Encoding"));
+        assertFalse(responder.headers.containsKey("Vary"));
+    }
+
+    private RecordingResponder request(Stream<String> acceptEncodingHeaders) throws IOException {
+        RecordingResponder responder = new RecordingResponder();
+        handler.handleRequest("/metrics/application", "/metrics", "GET", null, acceptEncodingHeaders, responder);
+        return responder;
+    }
+
+    private static String decode(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class RecordingResponder implements MetricsRequestHandler.StreamingResponder {
+
+        private int status;
+        private Map<String, String> headers;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public void respondWith(int status, String message, Map<String, String> headers) {
+            this.status = status;
+            this.headers = headers;
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            body.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public OutputStream respondWith(int status, Map<String, String> headers) {
+            this.status = status;
+            this.headers = headers;
+            return body;
+        }
+
+        String bodyAsString() {
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        InputStream bodyAsStream() {
+            return new ByteArrayInputStream(body.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ClockTest {
+
+    @Test
+    public void coarseClockAdvances() throws InterruptedException {
+        Clock clock = Clock.coarseClock();
+        long tick = clock.getTick();
+        long time = clock.getTime();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (clock.getTick() == tick && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(clock.getTick() > tick);
+        assertTrue(clock.getTime() >= time);
+    }
+
+    @Test
+    public void coarseClockIsShared() {
+        assertSame(Clock.coarseClock(), Clock.coarseClock());
+    }
+
+    @Test
+    public void coarseClockIsTruncatedToItsResolution() {
+        Clock clock = Clock.coarseClock();
+        assertEquals(0, Math.floorMod(clock.getTick(), TimeUnit.MILLISECONDS.toNanos(10)));
+        assertEquals(0, clock.getTime() % 10);
+        assertTrue(clock.getTick() <= System.nanoTime());
+    }
+}
@@ -0,0 +1,61 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConcurrentGaugeImplTest {
+
+    @Test
+    public void concurrentIncAndDec() throws InterruptedException {
+        ConcurrentGaugeImpl gauge = new ConcurrentGaugeImpl();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    gauge.inc();
+                    gauge.dec();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, gauge.getCount());
+    }
+
+    @Test
+    public void countsUpAndDown() {
+        ConcurrentGaugeImpl gauge = new ConcurrentGaugeImpl();
+        gauge.inc();
+        gauge.inc();
+        gauge.dec();
+        assertEquals(1, gauge.getCount());
+    }
+
+    @Test
+    public void minAndMaxOfPreviousMinute() {
+        ManualClock clock = new ManualClock();
+        ConcurrentGaugeImpl gauge = new ConcurrentGaugeImpl(clock);
+        gauge.inc();
+        gauge.inc();
+        gauge.dec();
+        assertEquals(0, gauge.getMax());
+        assertEquals(0, gauge.getMin());
+
+        clock.advance(1, TimeUnit.MINUTES);
+        assertEquals(2, gauge.getMax());
+        assertEquals(0, gauge.getMin());
+
+        clock.advance(1, TimeUnit.MINUTES);
+        assertEquals(1, gauge.getMax());
+        assertEquals(1, gauge.getMin());
+    }
+}
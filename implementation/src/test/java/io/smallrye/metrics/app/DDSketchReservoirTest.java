@@ -0,0 +1,138 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class DDSketchReservoirTest {
+
+    @Test
+    public void quantilesAreWithinRelativeAccuracy() {
+        DDSketchReservoir reservoir = new DDSketchReservoir(0.01);
+        for (int i = 1; i <= 100_000; i++) {
+            reservoir.update(i * 1000L);
+        }
+
+        DDSketchSnapshot snapshot = reservoir.getSnapshot();
+        assertEquals(100_000, snapshot.size());
+        assertEquals(1000, snapshot.getMin(), 10);
+        assertEquals(100_000_000, snapshot.getMax(), 1_000_000);
+        assertEquals(50_000_000, snapshot.getMedian(), 500_000);
+        assertEquals(99_000_000, snapshot.get99thPercentile(), 990_000);
+        assertEquals(99_900_000, snapshot.get999thPercentile(), 999_000);
+    }
+
+    @Test
+    public void zeroAndNegativeValues() {
+        DDSketchReservoir reservoir = new DDSketchReservoir();
+        reservoir.update(-10);
+        reservoir.update(0);
+        reservoir.update(Long.MAX_VALUE);
+
+        DDSketchSnapshot snapshot = reservoir.getSnapshot();
+        assertEquals(3, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertTrue(snapshot.getMax() > Long.MAX_VALUE / 100 * 99);
+    }
+
+    @Test
+    public void mergingIsLikeRecordingIntoOneReservoir() {
+        DDSketchReservoir first = new DDSketchReservoir();
+        DDSketchReservoir second = new DDSketchReservoir();
+        DDSketchReservoir both = new DDSketchReservoir();
+        for (int i = 0; i < 10_000; i++) {
+            long value = ThreadLocalRandom.current().nextLong(1_000_000_000L);
+            (i % 3 == 0 ? first : second).update(value);
+            both.update(value);
+        }
+        first.update(0);
+        both.update(0);
+
+        DDSketchSnapshot merged = first.getSnapshot().merge(second.getSnapshot());
+        assertEquals(both.getSnapshot(), merged);
+        assertEquals(both.getSnapshot().get99thPercentile(), merged.get99thPercentile(), 0.0);
+        assertEquals(merged, second.getSnapshot().merge(first.getSnapshot()));
+        assertEquals(merged, merged.merge(new DDSketchReservoir().getSnapshot()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergingRequiresTheSameAccuracy() {
+        new DDSketchReservoir(0.01).getSnapshot().merge(new DDSketchReservoir(0.02).getSnapshot());
+    }
+
+    @Test
+    public void binaryFormRoundTrip() {
+        DDSketchReservoir reservoir = new DDSketchReservoir();
+        for (int i = 0; i < 10_000; i++) {
+            reservoir.update(ThreadLocalRandom.current().nextLong(1_000_000L));
+        }
+        reservoir.update(0);
+
+        DDSketchSnapshot snapshot = reservoir.getSnapshot();
+        byte[] bytes = snapshot.toByteArray();
+        DDSketchSnapshot read = DDSketchSnapshot.fromByteArray(bytes);
+        assertEquals(snapshot, read);
+        assertEquals(snapshot.getMean(), read.getMean(), 0.0);
+        assertEquals(0.01, read.getRelativeAccuracy(), 0.0);
+        // a few hundred buckets with counts below 128 take one byte each
+        assertTrue(bytes.length < 2000);
+
+        DDSketchSnapshot empty = new DDSketchReservoir().getSnapshot();
+        assertEquals(empty, DDSketchSnapshot.fromByteArray(empty.toByteArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedBinaryForm() {
+        DDSketchReservoir reservoir = new DDSketchReservoir();
+        reservoir.update(1000);
+        byte[] bytes = reservoir.getSnapshot().toByteArray();
+        DDSketchSnapshot.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test
+    public void bucketsOutOfRangeAreRejected() throws IOException {
+        DDSketchReservoir reservoir = new DDSketchReservoir();
+        reservoir.update(Long.MAX_VALUE);
+        DDSketchSnapshot highest = reservoir.getSnapshot();
+        assertEquals(highest, DDSketchSnapshot.fromByteArray(highest.toByteArray()));
+        assertEquals(highest, DDSketchSnapshot.fromByteArray(sketch(0.01, DDSketchReservoir.maxIndex(0.01), 1)));
+
+        // one bucket past the highest one, or far beyond it, which merging would have to allocate
+        for (long minIndex : new long[] { DDSketchReservoir.maxIndex(0.01) + 1, Integer.MAX_VALUE - 1 }) {
+            try {
+                DDSketchSnapshot.fromByteArray(sketch(0.01, minIndex, 1));
+                fail("Accepted bucket " + minIndex);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static byte[] sketch(double relativeAccuracy, long minIndex, long count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeDouble(relativeAccuracy);
+        out.writeByte(0);
+        writeVarLong(out, minIndex);
+        out.writeByte(1);
+        writeVarLong(out, count);
+        return bytes.toByteArray();
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,159 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.junit.Test;
+
+public class ExponentiallyDecayingReservoirTest {
+
+    @Test
+    public void keepsAllValuesUntilFull() {
+        ExponentiallyDecayingReservoir reservoir = new ExponentiallyDecayingReservoir(100, 0.99);
+        for (int i = 0; i < 10; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(10, reservoir.size());
+        assertEquals(10, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(9, snapshot.getMax());
+    }
+
+    @Test
+    public void sizeIsBoundedOnceFull() {
+        ExponentiallyDecayingReservoir reservoir = new ExponentiallyDecayingReservoir(100, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(100, reservoir.size());
+        assertEquals(100, snapshot.size());
+        for (long value : snapshot.getValues()) {
+            assertTrue(value >= 0 && value < 1000);
+        }
+    }
+
+    @Test
+    public void newerValuesAreFavoured() {
+        ManualClock clock = new ManualClock();
+        ExponentiallyDecayingReservoir reservoir = new ExponentiallyDecayingReservoir(100, 0.015, clock);
+        for (int i = 0; i < 1000; i++) {
+            reservoir.update(1000);
+        }
+        // after 10 minutes the weight of new samples is e^9 times higher
+        clock.advance(10, TimeUnit.MINUTES);
+        for (int i = 0; i < 1000; i++) {
+            reservoir.update(2000);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(100, snapshot.size());
+        assertEquals(2000, snapshot.getMedian(), 0.0);
+        assertEquals(2000, snapshot.getMean(), 1.0);
+    }
+
+    @Test
+    public void decayWorksFarFromTheLandmark() {
+        ManualClock clock = new ManualClock();
+        ExponentiallyDecayingReservoir reservoir = new ExponentiallyDecayingReservoir(10, 0.015, clock);
+        for (int i = 0; i < 10; i++) {
+            reservoir.update(1000);
+        }
+
+        // far beyond the point where e^(alpha * (t - landmark)) overflows a double
+        clock.advance(100, TimeUnit.DAYS);
+        reservoir.update(2000);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        // the old samples are still in the reservoir, but their weight relative to now is zero
+        assertEquals(10, reservoir.size());
+        assertEquals(1, snapshot.size());
+        assertEquals(2000, snapshot.getMax());
+
+        // samples taken now compete with each other as usual
+        for (int i = 0; i < 1000; i++) {
+            reservoir.update(3000);
+        }
+        assertEquals(10, reservoir.size());
+        assertEquals(3000, reservoir.getSnapshot().getMedian(), 0.0);
+    }
+
+    @Test
+    public void oldSamplesLoseWeightGradually() {
+        ManualClock clock = new ManualClock();
+        ExponentiallyDecayingReservoir reservoir = new ExponentiallyDecayingReservoir(10, 0.015, clock);
+        for (int i = 0; i < 5; i++) {
+            reservoir.update(1000);
+        }
+        clock.advance(1, TimeUnit.MINUTES);
+        for (int i = 0; i < 5; i++) {
+            reservoir.update(2000);
+        }
+
+        // e^(0.015 * 60) = 2.46, so the newer samples weigh about 2.46 times as much as the older ones
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(10, snapshot.size());
+        assertEquals(1000 + 1000 * 2.4596 / 3.4596, snapshot.getMean(), 0.1);
+
+        // the ratio is the same no matter when the snapshot is taken
+        clock.advance(2, TimeUnit.HOURS);
+        assertEquals(1000 + 1000 * 2.4596 / 3.4596, reservoir.getSnapshot().getMean(), 0.1);
+    }
+
+    @Test
+    public void concurrentUpdates() throws InterruptedException {
+        ExponentiallyDecayingReservoir reservoir = new ExponentiallyDecayingReservoir(128, 0.015);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final long value = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    reservoir.update(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(128, snapshot.size());
+        assertTrue(snapshot.getMin() >= 0);
+        assertTrue(snapshot.getMax() <= 7);
+    }
+
+    @Test
+    public void updatesDuringSnapshotsAreNotLost() throws InterruptedException {
+        // large enough to accept every update, so that every update has to end up in the heap
+        ExponentiallyDecayingReservoir reservoir = new ExponentiallyDecayingReservoir(40_000, 0.015);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    reservoir.update(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            reservoir.getSnapshot();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, reservoir.size());
+        assertEquals(40_000, reservoir.getSnapshot().size());
+    }
+}
@@ -0,0 +1,45 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FixedBucketReservoirTest {
+
+    @Test
+    public void countsValuesInBuckets() {
+        FixedBucketReservoir reservoir = new FixedBucketReservoir(10, 100, 1000);
+        reservoir.update(-1);
+        reservoir.update(10);
+        reservoir.update(11);
+        reservoir.update(100);
+        reservoir.update(500);
+        reservoir.update(5000);
+
+        FixedBucketSnapshot snapshot = reservoir.getSnapshot();
+        assertEquals(6, reservoir.size());
+        assertArrayEquals(new long[] { 10, 100, 1000 }, snapshot.getBoundaries());
+        // boundaries are inclusive
+        assertArrayEquals(new long[] { 2, 4, 5 }, snapshot.getCumulativeCounts());
+        assertEquals(6, snapshot.getCount());
+        assertEquals(5620, snapshot.getSum());
+        assertEquals(5620 / 6.0, snapshot.getMean(), 0.0);
+        assertEquals(100, snapshot.getMedian(), 0.0);
+        // the values above the highest boundary are represented by the highest boundary
+        assertEquals(1000, snapshot.getMax());
+    }
+
+    @Test
+    public void emptySnapshot() {
+        FixedBucketSnapshot snapshot = new FixedBucketReservoir(10, 100).getSnapshot();
+        assertArrayEquals(new long[] { 0, 0 }, snapshot.getCumulativeCounts());
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundariesMustBeAscending() {
+        new FixedBucketReservoir(10, 10, 100);
+    }
+}
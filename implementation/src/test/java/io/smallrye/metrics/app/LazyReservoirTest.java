@@ -0,0 +1,47 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.junit.Test;
+
+public class LazyReservoirTest {
+
+    @Test
+    public void emptySnapshotIsTakenOnce() {
+        AtomicInteger created = new AtomicInteger();
+        LazyReservoir reservoir = new LazyReservoir(() -> {
+            created.incrementAndGet();
+            return new SlidingWindowReservoir(10);
+        });
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(0, snapshot.size());
+        assertSame(snapshot, reservoir.getSnapshot());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void firstUpdateCreatesTheDelegate() {
+        AtomicInteger created = new AtomicInteger();
+        LazyReservoir reservoir = new LazyReservoir(() -> {
+            created.incrementAndGet();
+            return new SlidingWindowReservoir(10);
+        });
+        assertEquals(0, reservoir.size());
+        assertEquals(0, created.get());
+
+        reservoir.getSnapshot();
+        reservoir.update(7);
+        reservoir.update(9);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(2, reservoir.size());
+        assertEquals(2, snapshot.size());
+        assertEquals(9, snapshot.getMax());
+        assertEquals(2, created.get());
+    }
+}
@@ -0,0 +1,149 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.junit.Test;
+
+public class LogLinearReservoirTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        LogLinearReservoir reservoir = new LogLinearReservoir();
+        for (int i = 1; i <= 100; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(100, reservoir.size());
+        assertEquals(100, snapshot.size());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(50.5, snapshot.getMean(), 0.0);
+        assertEquals(50, snapshot.getMedian(), 0.0);
+        assertEquals(99, snapshot.get99thPercentile(), 0.0);
+        assertEquals(100, snapshot.get999thPercentile(), 0.0);
+    }
+
+    @Test
+    public void largeValuesAreWithinPrecision() {
+        LogLinearReservoir reservoir = new LogLinearReservoir(TimeUnit.HOURS.toNanos(1), 3);
+        for (int i = 1; i <= 10_000; i++) {
+            reservoir.update(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(10_000, snapshot.size());
+        assertEquals(1_000, snapshot.getMin(), 1);
+        assertEquals(10_000_000, snapshot.getMax(), 10_000);
+        assertEquals(5_000_000, snapshot.getMedian(), 5_000);
+        assertEquals(9_900_000, snapshot.get99thPercentile(), 9_900);
+        assertEquals(9_990_000, snapshot.get999thPercentile(), 9_990);
+        assertEquals(5_000_500, snapshot.getMean(), 5_000);
+    }
+
+    @Test
+    public void tailIsNotLost() {
+        LogLinearReservoir reservoir = new LogLinearReservoir();
+        for (int i = 0; i < 1_000_000; i++) {
+            reservoir.update(i < 999_000 ? 10 : 5000);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(10, snapshot.get99thPercentile(), 0.0);
+        assertEquals(10, snapshot.getValue(0.999), 0.0);
+        assertEquals(5000, snapshot.getValue(0.9991), 50);
+        assertEquals(5000, snapshot.getMax(), 50);
+    }
+
+    @Test
+    public void valuesOutsideOfRangeAreClamped() {
+        LogLinearReservoir reservoir = new LogLinearReservoir(1000, 2);
+        reservoir.update(-5);
+        reservoir.update(Long.MAX_VALUE);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(1000, snapshot.getMax(), 10);
+    }
+
+    @Test
+    public void fullRangeOfLongs() {
+        LogLinearReservoir reservoir = new LogLinearReservoir(Long.MAX_VALUE, 2);
+        reservoir.update(0);
+        reservoir.update(Long.MAX_VALUE);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(0, snapshot.getMin());
+        assertTrue(snapshot.getMax() > Long.MAX_VALUE / 100 * 99);
+    }
+
+    @Test
+    public void defaultRangeIsOneHourInNanoseconds() {
+        LogLinearReservoir reservoir = new LogLinearReservoir();
+        reservoir.update(TimeUnit.HOURS.toNanos(2));
+
+        assertEquals(TimeUnit.HOURS.toNanos(1), reservoir.getSnapshot().getMax());
+    }
+
+    @Test
+    public void minAndMaxAreExact() {
+        LogLinearReservoir reservoir = new LogLinearReservoir();
+        for (int i = 0; i < 100; i++) {
+            reservoir.update(1001 + i);
+        }
+        reservoir.update(100_003);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1001, snapshot.getMin());
+        assertEquals(100_003, snapshot.getMax());
+        // the value of the bucket is above the maximum
+        assertEquals(100_003, snapshot.getValue(1.0), 0.0);
+        assertEquals(1050, snapshot.getMedian(), 10);
+    }
+
+    @Test
+    public void emptySnapshot() {
+        Snapshot snapshot = new LogLinearReservoir().getSnapshot();
+        assertEquals(0, snapshot.size());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getMean(), 0.0);
+        assertEquals(0, snapshot.get99thPercentile(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void significantDigitsAreLimited() {
+        new LogLinearReservoir(1000, 6);
+    }
+
+    @Test
+    public void concurrentUpdates() throws InterruptedException {
+        LogLinearReservoir reservoir = new LogLinearReservoir();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final long value = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    reservoir.update(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(800_000, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(7, snapshot.getMax());
+        assertEquals(3.5, snapshot.getMean(), 0.0);
+    }
+}
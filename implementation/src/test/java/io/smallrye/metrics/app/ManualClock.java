@@ -0,0 +1,22 @@
+package io.smallrye.metrics.app;
+
+import java.util.concurrent.TimeUnit;
+
+class ManualClock extends Clock {
+
+    private long nanos = TimeUnit.HOURS.toNanos(1000);
+
+    void advance(long duration, TimeUnit unit) {
+        nanos += unit.toNanos(duration);
+    }
+
+    @Override
+    public long getTick() {
+        return nanos;
+    }
+
+    @Override
+    public long getTime() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,116 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MeterImplTest {
+
+    @Test
+    public void closedFormDecayMatchesTickingOneByOne() {
+        EWMA ticked = EWMA.oneMinuteEWMA();
+        EWMA closedForm = EWMA.oneMinuteEWMA();
+        ticked.update(300);
+        closedForm.update(300);
+
+        for (int i = 0; i < 1000; i++) {
+            ticked.tick();
+        }
+        closedForm.tick(1000);
+
+        assertEquals(ticked.getRate(TimeUnit.SECONDS), closedForm.getRate(TimeUnit.SECONDS), 1e-12);
+    }
+
+    @Test
+    public void meanRateBeforeTheClockAdvances() {
+        ManualClock clock = new ManualClock();
+        MeterImpl meter = new MeterImpl(clock);
+        meter.mark(5);
+        assertEquals(0.0, meter.getMeanRate(), 0.0);
+
+        clock.advance(1, TimeUnit.SECONDS);
+        assertEquals(5.0, meter.getMeanRate(), 1e-9);
+    }
+
+    @Test
+    public void idleMeterDecays() {
+        ManualClock clock = new ManualClock();
+        MeterImpl meter = new MeterImpl(clock);
+        meter.mark(300);
+        clock.advance(6, TimeUnit.SECONDS);
+        assertEquals(60.0, meter.getOneMinuteRate(), 1e-9);
+
+        clock.advance(10, TimeUnit.HOURS);
+        assertEquals(0.0, meter.getOneMinuteRate(), 1e-9);
+        assertEquals(300, meter.getCount());
+    }
+
+    @Test
+    public void tickerTicksRegisteredMeters() {
+        ManualClock clock = new ManualClock();
+        MeterTicker ticker = new MeterTicker();
+        MeterImpl meter = new MeterImpl(clock, ticker);
+        meter.mark(300);
+        clock.advance(6, TimeUnit.SECONDS);
+        meter.mark(500);
+
+        ticker.tick();
+        // only the events before the tick are in the first interval
+        clock.advance(1, TimeUnit.SECONDS);
+        assertEquals(160.0, meter.getOneMinuteRate(), 1e-9);
+        assertEquals(800, meter.getCount());
+    }
+
+    @Test
+    public void tickerOnlyRunsWhileItHasMeters() {
+        MeterTicker ticker = new MeterTicker();
+        assertFalse(ticker.isRunning());
+
+        MeterImpl meter = new MeterImpl(new ManualClock(), ticker);
+        TimerImpl timer = new TimerImpl(new SlidingWindowReservoir(10), new ManualClock(), new ManualClock(), ticker);
+        assertTrue(ticker.isRunning());
+
+        ticker.unregister(Collections.singleton(meter));
+        assertTrue(ticker.isRunning());
+        ticker.unregister(Collections.singleton((MeterImpl) timer.getMeter()));
+        assertFalse(ticker.isRunning());
+
+        MeterImpl another = new MeterImpl(new ManualClock(), ticker);
+        assertTrue(ticker.isRunning());
+        ticker.unregister(Collections.singleton(another));
+        assertFalse(ticker.isRunning());
+    }
+
+    @Test
+    public void eventsAfterATickCountForTheNextInterval() {
+        ManualClock clock = new ManualClock();
+        MeterImpl meter = new MeterImpl(clock);
+        meter.mark(300);
+        clock.advance(6, TimeUnit.SECONDS);
+        assertEquals(60.0, meter.getOneMinuteRate(), 1e-9);
+
+        meter.mark(600);
+        clock.advance(5, TimeUnit.SECONDS);
+        double alpha = 1 - Math.exp(-5 / 60.0);
+        assertEquals(60.0 + alpha * (120.0 - 60.0), meter.getOneMinuteRate(), 1e-9);
+        assertEquals(900, meter.getCount());
+    }
+
+    @Test
+    public void timerCountsWithItsMeter() {
+        ManualClock clock = new ManualClock();
+        TimerImpl timer = new TimerImpl(new SlidingWindowReservoir(10), clock);
+        timer.update(5, TimeUnit.MILLISECONDS);
+        timer.update(7, TimeUnit.MILLISECONDS);
+        timer.update(-1, TimeUnit.MILLISECONDS);
+
+        assertEquals(2, timer.getCount());
+        assertEquals(2, timer.getMeter().getCount());
+        assertEquals(2, timer.getSnapshot().size());
+    }
+}
@@ -0,0 +1,64 @@
+package io.smallrye.metrics.app;
+
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * Reports the heap retained per metric instance, to keep registries with many tag combinations affordable.
+ * Not part of the regular test run (surefire only picks up *Test classes), run it explicitly with
+ * {@code mvn surefire:test -Dtest=MetricFootprintBenchmark}.
+ */
+public class MetricFootprintBenchmark {
+
+    private static final int INSTANCES = 20_000;
+
+    @Test
+    public void meter() {
+        reportFootprint("meter", () -> new MeterImpl(Clock.coarseClock()));
+    }
+
+    @Test
+    public void histogram() {
+        reportFootprint("histogram",
+                () -> new HistogramImpl(new LazyReservoir(ExponentiallyDecayingReservoir::new)));
+    }
+
+    @Test
+    public void timer() {
+        reportFootprint("timer",
+                () -> new TimerImpl(new LazyReservoir(ExponentiallyDecayingReservoir::new), Clock.defaultClock(),
+                        Clock.coarseClock()));
+    }
+
+    @Test
+    public void updatedTimer() {
+        reportFootprint("updated timer", () -> {
+            TimerImpl timer = new TimerImpl(new LazyReservoir(ExponentiallyDecayingReservoir::new),
+                    Clock.defaultClock(), Clock.coarseClock());
+            timer.update(1, java.util.concurrent.TimeUnit.MILLISECONDS);
+            return timer;
+        });
+    }
+
+    private static void reportFootprint(String type, Supplier<Object> metric) {
+        // warm up, so that class loading and the shared clocks don't count
+        metric.get();
+        Object[] metrics = new Object[INSTANCES];
+        long before = usedHeap();
+        for (int i = 0; i < INSTANCES; i++) {
+            metrics[i] = metric.get();
+        }
+        long bytes = (usedHeap() - before) / INSTANCES;
+        // keep the metrics reachable until the heap has been measured
+        System.out.println("Retained bytes per " + type + ": " + bytes + " (" + metrics.length + " instances)");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
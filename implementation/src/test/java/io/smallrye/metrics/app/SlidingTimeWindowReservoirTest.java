@@ -0,0 +1,118 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.junit.Test;
+
+public class SlidingTimeWindowReservoirTest {
+
+    @Test
+    public void keepsValuesWithinTheWindow() {
+        ManualClock clock = new ManualClock();
+        SlidingTimeWindowReservoir reservoir = new SlidingTimeWindowReservoir(30, TimeUnit.SECONDS, 100, clock);
+        reservoir.update(1);
+        clock.advance(10, TimeUnit.SECONDS);
+        reservoir.update(2);
+        clock.advance(10, TimeUnit.SECONDS);
+        reservoir.update(3);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(3, reservoir.size());
+        assertEquals(3, snapshot.size());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(3, snapshot.getMax());
+
+        // the first value leaves the window
+        clock.advance(15, TimeUnit.SECONDS);
+        snapshot = reservoir.getSnapshot();
+        assertEquals(2, reservoir.size());
+        assertEquals(2, snapshot.getMin());
+        assertEquals(3, snapshot.getMax());
+
+        // a full window later, nothing is left
+        clock.advance(30, TimeUnit.SECONDS);
+        assertEquals(0, reservoir.size());
+        assertEquals(0, reservoir.getSnapshot().size());
+    }
+
+    @Test
+    public void reusedBucketsDropOldValues() {
+        ManualClock clock = new ManualClock();
+        SlidingTimeWindowReservoir reservoir = new SlidingTimeWindowReservoir(10, TimeUnit.SECONDS, 100, clock);
+        for (int i = 0; i < 50; i++) {
+            reservoir.update(1000);
+        }
+        // same bucket of the ring buffer, one window later
+        clock.advance(10, TimeUnit.SECONDS);
+        reservoir.update(2000);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(2000, snapshot.getMin());
+    }
+
+    @Test
+    public void busySecondsAreSampledAndWeighted() {
+        ManualClock clock = new ManualClock();
+        SlidingTimeWindowReservoir reservoir = new SlidingTimeWindowReservoir(60, TimeUnit.SECONDS, 10, clock);
+        for (int i = 0; i < 900; i++) {
+            reservoir.update(1000);
+        }
+        clock.advance(1, TimeUnit.SECONDS);
+        for (int i = 0; i < 100; i++) {
+            reservoir.update(2000);
+        }
+
+        // only 10 samples are kept per second, but the first second saw 9 times as many values
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(20, snapshot.size());
+        assertEquals(1100, snapshot.getMean(), 0.001);
+        assertEquals(1000, snapshot.get75thPercentile(), 0.0);
+        assertEquals(2000, snapshot.get95thPercentile(), 0.0);
+    }
+
+    @Test
+    public void snapshotsOnlyContainWrittenValuesOfTheWindow() throws InterruptedException {
+        AtomicLong seconds = new AtomicLong();
+        Clock clock = new Clock() {
+            @Override
+            public long getTick() {
+                return TimeUnit.SECONDS.toNanos(seconds.get());
+            }
+
+            @Override
+            public long getTime() {
+                return TimeUnit.SECONDS.toMillis(seconds.get());
+            }
+        };
+        SlidingTimeWindowReservoir reservoir = new SlidingTimeWindowReservoir(4, TimeUnit.SECONDS, 8, clock);
+        Thread writer = new Thread(() -> {
+            // every value is the second it was recorded in plus one, and buckets are reused every 4 seconds
+            for (long second = 0; second < 20_000; second++) {
+                for (int i = 0; i < 20; i++) {
+                    reservoir.update(second + 1);
+                }
+                seconds.incrementAndGet();
+            }
+        });
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                long before = seconds.get();
+                Snapshot snapshot = reservoir.getSnapshot();
+                long after = seconds.get();
+                for (long value : snapshot.getValues()) {
+                    assertTrue("Value " + value + " is older than the window at " + before, value - 1 > before - 4);
+                    assertTrue("Value " + value + " was never written by " + after, value >= 1 && value - 1 <= after);
+                }
+            }
+        } finally {
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.smallrye.metrics.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.junit.Test;
+
+public class SlidingWindowReservoirTest {
+
+    @Test
+    public void keepsAllValuesUntilFull() {
+        SlidingWindowReservoir reservoir = new SlidingWindowReservoir(10);
+        for (int i = 1; i <= 4; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(4, reservoir.size());
+        assertEquals(4, snapshot.size());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(4, snapshot.getMax());
+        assertEquals(2.5, snapshot.getMean(), 0.0);
+    }
+
+    @Test
+    public void keepsTheLastValues() {
+        SlidingWindowReservoir reservoir = new SlidingWindowReservoir(10);
+        for (int i = 1; i <= 25; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(10, snapshot.size());
+        assertEquals(16, snapshot.getMin());
+        assertEquals(25, snapshot.getMax());
+        assertEquals(20, snapshot.getMedian(), 0.0);
+    }
+
+    @Test
+    public void concurrentUpdates() throws InterruptedException {
+        SlidingWindowReservoir reservoir = new SlidingWindowReservoir(100);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final long value = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    reservoir.update(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, reservoir.getSnapshot().size());
+    }
+
+    @Test
+    public void snapshotsOnlyContainWrittenValuesOfTheWindow() throws InterruptedException {
+        SlidingWindowReservoir reservoir = new SlidingWindowReservoir(16);
+        AtomicLong written = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            for (long i = 1; i <= 2_000_000; i++) {
+                reservoir.update(i);
+                written.lazySet(i);
+            }
+        });
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                long before = written.get();
+                for (long value : reservoir.getSnapshot().getValues()) {
+                    // values are written in order, so anything older than the last 16 values has left the window
+                    assertTrue("Value " + value + " after " + before + " values", value > before - 16);
+                    assertTrue("Value " + value + " was never written", value >= 1 && value <= 2_000_000);
+                }
+            }
+        } finally {
+            writer.join();
+        }
+    }
+}
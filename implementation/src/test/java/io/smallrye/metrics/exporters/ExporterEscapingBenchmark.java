@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.metrics.exporters;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.junit.Test;
+
+/**
+ * Compares how many strings per second the character scanners that sanitize metric names and escape help texts and
+ * label values in the OpenMetrics output process, with the regular expressions they replaced. That both produce the
+ * same output is checked by {@link OpenMetricsExporterTest}.
+ * Not part of the regular test run (surefire only picks up *Test classes), run it explicitly with
+ * {@code mvn surefire:test -Dtest=ExporterEscapingBenchmark}.
+ */
+public class ExporterEscapingBenchmark {
+
+    private static final long DURATION_MILLIS = Long.getLong("benchmark.durationMillis", 1000);
+
+    private static final String[] NAMES = {
+            "requests", "jvm.memory.used", "http_server_requests", "ft.io.smallrye.Service.call.invocations.total",
+            "a__b", "my-metric:with spaces"
+    };
+
+    private static final String[] VALUES = {
+            "GET", "/api/users/{id}", "description with \"quotes\"", "C:\\Program Files\\app", "line1\\nline2",
+            "trailing backslash\\"
+    };
+
+    @Test
+    public void throughput() {
+        compare("metric names", NAMES, OpenMetricsExporterTest::regexMetricName,
+                OpenMetricsExporter::getOpenMetricsMetricName);
+        compare("help texts", VALUES, OpenMetricsExporterTest::regexHelpText, OpenMetricsExporter::quoteHelpText);
+        compare("label values", VALUES, OpenMetricsExporterTest::regexValue, OpenMetricsExporter::quoteValue);
+    }
+
+    private void compare(String what, String[] inputs, UnaryOperator<String> regex, UnaryOperator<String> scanner) {
+        System.out.println(what + ":");
+        // warm up both before measuring either
+        run(inputs, regex);
+        run(inputs, scanner);
+        report("regex", run(inputs, regex));
+        report("scanner", run(inputs, scanner));
+    }
+
+    private long run(String[] inputs, UnaryOperator<String> operation) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+        long ops = 0;
+        int blackhole = 0;
+        while (System.nanoTime() < deadline) {
+            for (String input : inputs) {
+                blackhole += operation.apply(input).length();
+            }
+            ops += inputs.length;
+        }
+        if (blackhole == 42) {
+            System.out.println();
+        }
+        return ops;
+    }
+
+    private void report(String variant, long ops) {
+        System.out.printf("  %-8s %,14d ops/s%n", variant, ops * 1000 / DURATION_MILLIS);
+    }
+}
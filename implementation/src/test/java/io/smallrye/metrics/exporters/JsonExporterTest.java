@@ -18,9 +18,12 @@
 package io.smallrye.metrics.exporters;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -445,4 +448,38 @@ public class JsonExporterTest {
         assertEquals(0, json.getInt("c1"));
     }
 
+    @Test
+    public void streamingExportMatchesStringBuilderExport() throws IOException {
+        JsonExporter exporter = new JsonExporter();
+        MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        registry.counter("streamed_counter", new Tag("color", "blue")).inc(3);
+        registry.histogram("streamed_histogram").update(12);
+        registry.concurrentGauge("streamed_cgauge").inc();
+
+        StringWriter writer = new StringWriter();
+        exporter.exportOneScope(MetricRegistry.Type.APPLICATION, writer);
+        assertEquals(exporter.exportOneScope(MetricRegistry.Type.APPLICATION).toString(), writer.toString());
+
+        writer = new StringWriter();
+        exporter.exportMetricsByName(MetricRegistry.Type.APPLICATION, "streamed_histogram", writer);
+        JsonObject json = Json.createReader(new StringReader(writer.toString())).read().asJsonObject();
+        assertEquals(1, json.getJsonObject("streamed_histogram").getInt("count"));
+    }
+
+    @Test
+    public void compactOutputWithoutPrettyPrinting() {
+        JsonExporter exporter = new JsonExporter(false);
+        MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        registry.counter("c1").inc();
+        registry.meter("m1").mark();
+
+        String result = exporter.exportOneScope(MetricRegistry.Type.APPLICATION).toString();
+        assertFalse(result, result.contains(LINE_SEPARATOR));
+        assertFalse(result, result.contains(" "));
+
+        JsonObject json = Json.createReader(new StringReader(result)).read().asJsonObject();
+        assertEquals(1, json.getInt("c1"));
+        assertEquals(1, json.getJsonObject("m1").getInt("count"));
+    }
+
 }
@@ -28,10 +28,17 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -45,6 +52,7 @@ import org.eclipse.microprofile.metrics.MetricFilter;
 import org.eclipse.microprofile.metrics.MetricID;
 import org.eclipse.microprofile.metrics.MetricRegistry;
 import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
 import org.eclipse.microprofile.metrics.Tag;
 import org.eclipse.microprofile.metrics.Timer;
 import org.junit.After;
@@ -55,6 +63,7 @@ import io.smallrye.metrics.ExtendedMetadata;
 import io.smallrye.metrics.JmxWorker;
 import io.smallrye.metrics.MetricRegistries;
 import io.smallrye.metrics.app.ExponentiallyDecayingReservoir;
+import io.smallrye.metrics.app.FixedBucketReservoir;
 import io.smallrye.metrics.app.HistogramImpl;
 import io.smallrye.metrics.app.MeterImpl;
 import io.smallrye.metrics.app.TimerImpl;
@@ -69,11 +78,79 @@ public class OpenMetricsExporterTest {
     private Tag QUANTILE_0_99 = new Tag("quantile", "0.99");
     private Tag QUANTILE_0_999 = new Tag("quantile", "0.999");
 
+    // weighted towards the characters the name and escaping conversions care about
+    private static final String ALPHABET = "aZ09__\\\\\\nn\"\"-.: \r\n\u0085\u2028\u00e9";
+
     @After
     public void cleanupApplicationMetrics() {
         MetricRegistries.get(MetricRegistry.Type.APPLICATION).removeMatching(MetricFilter.ALL);
     }
 
+    @Test
+    public void streamingExportMatchesStringBuilderExport() throws IOException {
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        registry.counter("streamed_counter", new Tag("color", "blue")).inc(3);
+        registry.timer("streamed_timer").update(5, TimeUnit.MILLISECONDS);
+        registry.histogram("streamed_histogram").update(12);
+
+        StringWriter writer = new StringWriter();
+        exporter.exportOneScope(MetricRegistry.Type.APPLICATION, writer);
+        assertEquals(exporter.exportOneScope(MetricRegistry.Type.APPLICATION).toString(), writer.toString());
+
+        writer = new StringWriter();
+        exporter.exportMetricsByName(MetricRegistry.Type.APPLICATION, "streamed_timer", writer);
+        assertEquals(exporter.exportMetricsByName(MetricRegistry.Type.APPLICATION, "streamed_timer").toString(),
+                writer.toString());
+        assertThat(writer.toString(), containsString("application_streamed_timer_seconds_count 1.0"));
+    }
+
+    @Test
+    public void concurrentExportsWithOneExporter() throws Exception {
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        Metadata metadata = Metadata.builder().withName("shared_counter").withType(MetricType.COUNTER)
+                .withDescription("counted concurrently").build();
+        for (int i = 0; i < 20; i++) {
+            registry.counter(metadata, new Tag("index", String.valueOf(i))).inc(i);
+        }
+        String expected = exporter.exportOneScope(MetricRegistry.Type.APPLICATION).toString();
+        assertHasHelpLineExactlyOnce(expected, "application_shared_counter_total", "counted concurrently");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> exports = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                exports.add(executor.submit(() -> exporter.exportOneScope(MetricRegistry.Type.APPLICATION).toString()));
+            }
+            for (Future<String> export : exports) {
+                assertEquals(expected, export.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void reRegisteredMetricIsExportedWithItsNewMetadata() {
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        Tag blueTag = new Tag("color", "blue");
+        Metadata bytes = Metadata.builder().withName("reregistered").withType(MetricType.COUNTER)
+                .withUnit(MetricUnits.BYTES).build();
+        registry.counter(bytes, blueTag).inc();
+        String result = exporter.exportOneScope(MetricRegistry.Type.APPLICATION).toString();
+        assertHasValueLineExactlyOnce(result, "application_reregistered_total_bytes", "1.0", blueTag);
+
+        registry.remove(new MetricID("reregistered", blueTag));
+        Metadata seconds = Metadata.builder().withName("reregistered").withType(MetricType.COUNTER)
+                .withUnit(MetricUnits.SECONDS).build();
+        registry.counter(seconds, blueTag).inc(16);
+        result = exporter.exportOneScope(MetricRegistry.Type.APPLICATION).toString();
+        assertHasValueLineExactlyOnce(result, "application_reregistered_total_seconds", "16.0", blueTag);
+        assertThat(result, not(containsString("application_reregistered_total_bytes")));
+    }
+
     @Test
     public void testUptimeGaugeUnitConversion() {
         OpenMetricsExporter exporter = new OpenMetricsExporter();
@@ -111,6 +188,11 @@ public class OpenMetricsExporterTest {
 
         assertEquals("a_a", getOpenMetricsMetricName("a__a"));
         assertEquals("fooBar_blaBla", getOpenMetricsMetricName("fooBar_blaBla"));
+
+        assertEquals("a_b", getOpenMetricsMetricName("a_-b"));
+        assertEquals("a__b", getOpenMetricsMetricName("a___b"));
+        assertEquals("a_b_", getOpenMetricsMetricName("a:b:"));
+        assertEquals("_a_b", getOpenMetricsMetricName("..a.:-b"));
     }
 
     @Test
@@ -167,6 +249,63 @@ public class OpenMetricsExporterTest {
         }
     }
 
+    @Test
+    public void escapingOfHelpTextsAndLabelValues() {
+        // a backslash is escaped, unless it is followed by an n
+        assertEquals("a\\\\b", OpenMetricsExporter.quoteHelpText("a\\b"));
+        assertEquals("a\\\\b", OpenMetricsExporter.quoteValue("a\\b"));
+        assertEquals("a\\nb", OpenMetricsExporter.quoteHelpText("a\\nb"));
+        assertEquals("a\\nb", OpenMetricsExporter.quoteValue("a\\nb"));
+        assertEquals("\\\\\\\\", OpenMetricsExporter.quoteValue("\\\\"));
+        // line feeds are kept as they are
+        assertEquals("a\nb", OpenMetricsExporter.quoteHelpText("a\nb"));
+        assertEquals("a\nb", OpenMetricsExporter.quoteValue("a\nb"));
+        // quotes are only escaped in label values
+        assertEquals("a\"b", OpenMetricsExporter.quoteHelpText("a\"b"));
+        assertEquals("a\\\"b", OpenMetricsExporter.quoteValue("a\"b"));
+        // a backslash at the end, or right before a final line terminator, is escaped once more
+        assertEquals("a\\\\", OpenMetricsExporter.quoteHelpText("a\\"));
+        assertEquals("a\\\\", OpenMetricsExporter.quoteValue("a\\"));
+        assertEquals("a\\\\\\\n", OpenMetricsExporter.quoteHelpText("a\\\n"));
+        assertEquals("a\\\\\\\n", OpenMetricsExporter.quoteValue("a\\\n"));
+        assertEquals("a\\\\\\\r\n", OpenMetricsExporter.quoteValue("a\\\r\n"));
+        assertEquals("a\\\\\\\u2028", OpenMetricsExporter.quoteValue("a\\\u2028"));
+        assertEquals("a\\\\\n\n", OpenMetricsExporter.quoteValue("a\\\n\n"));
+    }
+
+    @Test
+    public void escapingMatchesRegularExpressions() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            String input = randomString(random);
+            assertEquals(input, regexMetricName(input), getOpenMetricsMetricName(input));
+            assertEquals(input, regexHelpText(input), OpenMetricsExporter.quoteHelpText(input));
+            assertEquals(input, regexValue(input), OpenMetricsExporter.quoteValue(input));
+        }
+    }
+
+    private static String randomString(Random random) {
+        int length = random.nextInt(12);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    // the regular expressions that the character scanners replaced, also used by ExporterEscapingBenchmark
+    static String regexMetricName(String name) {
+        return name.replaceAll("[^\\w]+", "_").replace("__", "_").replace(":_", ":");
+    }
+
+    static String regexHelpText(String value) {
+        return value.replaceAll("\\\\([^n])", "\\\\\\\\$1").replaceAll("\\\\$", "\\\\\\\\");
+    }
+
+    static String regexValue(String value) {
+        return value.replaceAll("\\\\([^n])", "\\\\\\\\$1").replaceAll("\"", "\\\\\"").replaceAll("\\\\$", "\\\\\\\\");
+    }
+
     @Test
     public void testTagValueQuoting() {
         OpenMetricsExporter exporter = new OpenMetricsExporter();
@@ -324,6 +463,70 @@ public class OpenMetricsExporterTest {
         assertHasHelpLineExactlyOnce(result, "application_MyHisto", "awesome");
     }
 
+    @Test
+    public void exportBucketHistograms() {
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+
+        Metadata metadata = Metadata
+                .builder()
+                .withType(MetricType.HISTOGRAM)
+                .withName("MyBuckets")
+                .withUnit(MetricUnits.BYTES)
+                .withDescription("awesome")
+                .build();
+        Tag blueTag = new Tag("color", "blue");
+        Histogram histogram = new HistogramImpl(new FixedBucketReservoir(10, 100));
+        registry.register(metadata, histogram, blueTag);
+
+        histogram.update(5);
+        histogram.update(50);
+        histogram.update(60);
+        histogram.update(500);
+
+        String result = exporter.exportMetricsByName(MetricRegistry.Type.APPLICATION, "MyBuckets").toString();
+        System.out.println(result);
+
+        assertHasTypeLineExactlyOnce(result, "application_MyBuckets_bytes", "histogram");
+        assertHasHelpLineExactlyOnce(result, "application_MyBuckets_bytes", "awesome");
+        assertHasValueLineExactlyOnce(result, "application_MyBuckets_bytes_bucket", "1.0", blueTag, new Tag("le", "10.0"));
+        assertHasValueLineExactlyOnce(result, "application_MyBuckets_bytes_bucket", "3.0", blueTag, new Tag("le", "100.0"));
+        assertHasValueLineExactlyOnce(result, "application_MyBuckets_bytes_bucket", "4.0", blueTag, new Tag("le", "+Inf"));
+        assertHasValueLineExactlyOnce(result, "application_MyBuckets_bytes_sum", "615.0", blueTag);
+        assertHasValueLineExactlyOnce(result, "application_MyBuckets_bytes_count", "4.0", blueTag);
+        assertThat(result, not(containsString("quantile")));
+    }
+
+    @Test
+    public void exportBucketTimers() {
+        OpenMetricsExporter exporter = new OpenMetricsExporter();
+        MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+
+        Metadata metadata = Metadata
+                .builder()
+                .withType(MetricType.TIMER)
+                .withName("mybuckettimer")
+                .build();
+        Timer timer = new TimerImpl(new FixedBucketReservoir(TimeUnit.MILLISECONDS.toNanos(100),
+                TimeUnit.SECONDS.toNanos(1)));
+        Tag blueTag = new Tag("color", "blue");
+        registry.register(metadata, timer, blueTag);
+
+        timer.update(50, TimeUnit.MILLISECONDS);
+        timer.update(2, TimeUnit.SECONDS);
+
+        String result = exporter.exportMetricsByName(MetricRegistry.Type.APPLICATION, "mybuckettimer").toString();
+        System.out.println(result);
+
+        assertHasTypeLineExactlyOnce(result, "application_mybuckettimer_seconds", "histogram");
+        assertHasValueLineExactlyOnce(result, "application_mybuckettimer_seconds_bucket", "1.0", blueTag, new Tag("le", "0.1"));
+        assertHasValueLineExactlyOnce(result, "application_mybuckettimer_seconds_bucket", "1.0", blueTag, new Tag("le", "1.0"));
+        assertHasValueLineExactlyOnce(result, "application_mybuckettimer_seconds_bucket", "2.0", blueTag, new Tag("le", "+Inf"));
+        assertHasValueLineExactlyOnce(result, "application_mybuckettimer_seconds_sum", "2.05", blueTag);
+        assertHasValueLineExactlyOnce(result, "application_mybuckettimer_seconds_count", "2.0", blueTag);
+        assertHasTypeLineExactlyOnce(result, "application_mybuckettimer_rate_per_second", "gauge");
+    }
+
     @Test
     public void exportCounters() {
         OpenMetricsExporter exporter = new OpenMetricsExporter();